@@ -0,0 +1,132 @@
+package common.bench;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares JMH results in CSV format to the checked-in baseline
+ * and reports regressions.
+ *
+ * <p>Throughput scores (ops/s) regress when they decrease, allocation
+ * scores (B/op, from <code>-prof gc</code>) when they increase.
+ * Other metrics are ignored.
+ *
+ * <p>Usage: <code>BaselineCheck baseline.csv results.csv [tolerance%]</code>.
+ * Exits with status 1 if any regression exceeds the tolerance (default 10%).
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+public class BaselineCheck {
+	
+	/** A single JMH result line. */
+	private static class Result {
+		final double dScore;
+		final String sUnit;
+		Result(double dScore, String sUnit) {
+			this.dScore = dScore;
+			this.sUnit = sUnit;
+		}
+	}
+	
+	/**
+	 * Reads a JMH CSV result file.
+	 * @param sFilename  the CSV file
+	 * @return  the results mapped by benchmark name and parameters
+	 * @throws IOException  if reading fails
+	 */
+	private static Map<String, Result> readResults(String sFilename) throws IOException {
+		Map<String, Result> mapResults = new LinkedHashMap<String, Result>();
+		BufferedReader reader = new BufferedReader(new FileReader(sFilename));
+		try {
+			List<String> header = splitCsv(reader.readLine());
+			int iScore = header.indexOf("Score");
+			int iUnit  = header.indexOf("Unit");
+			String line;
+			while ((line = reader.readLine()) != null) {
+				List<String> values = splitCsv(line);
+				StringBuilder sbKey = new StringBuilder(values.get(0));
+				for (int i = iUnit + 1; i < values.size(); ++i) {
+					if (!values.get(i).isEmpty()) {
+						sbKey.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(values.get(i));
+					}
+				}
+				double dScore = Double.parseDouble(values.get(iScore).replace(',', '.'));
+				mapResults.put(sbKey.toString(), new Result(dScore, values.get(iUnit)));
+			}
+		} finally {
+			reader.close();
+		}
+		return mapResults;
+	}
+	
+	/**
+	 * Splits a CSV line, removing quotes around values.
+	 */
+	private static List<String> splitCsv(String line) {
+		List<String> values = new ArrayList<String>();
+		StringBuilder sbValue = new StringBuilder();
+		boolean isQuoted = false;
+		for (int i=0; i<line.length(); ++i) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				isQuoted = !isQuoted;
+			} else if (c == ',' && !isQuoted) {
+				values.add(sbValue.toString());
+				sbValue.setLength(0);
+			} else {
+				sbValue.append(c);
+			}
+		}
+		values.add(sbValue.toString());
+		return values;
+	}
+	
+	/**
+	 * Main entry point.
+	 * @param args  the baseline file, the results file and an optional tolerance in percent
+	 * @throws IOException  if reading a file fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BaselineCheck baseline.csv results.csv [tolerance%]");
+			System.exit(2);
+		}
+		Map<String, Result> mapBaseline = readResults(args[0]);
+		Map<String, Result> mapResults  = readResults(args[1]);
+		double dTolerance = (args.length > 2 ? Double.parseDouble(args[2]) : 10.0);
+		
+		int nRegressions = 0;
+		for (Map.Entry<String, Result> entry : mapResults.entrySet()) {
+			Result base = mapBaseline.get(entry.getKey());
+			Result result = entry.getValue();
+			if (base == null || base.dScore == 0.0 || !base.sUnit.equals(result.sUnit)) {
+				continue;
+			}
+			double dChange = 100.0*(result.dScore - base.dScore)/base.dScore;
+			boolean isRegression;
+			if (result.sUnit.endsWith("/s")) {
+				isRegression = (dChange < -dTolerance);
+			} else if (result.sUnit.equals("B/op")) {
+				isRegression = (dChange > dTolerance);
+			} else {
+				continue;
+			}
+			System.out.printf("%s %-70s %14.1f -> %14.1f %-8s (%+.1f%%)%n", 
+				(isRegression ? "REGRESSION" : "ok        "), entry.getKey(), 
+				base.dScore, result.dScore, result.sUnit, dChange);
+			if (isRegression) {
+				++nRegressions;
+			}
+		}
+		System.out.println(nRegressions + " regression(s) above " + dTolerance + "%");
+		System.exit(nRegressions > 0 ? 1 : 0);
+	}
+}
@@ -0,0 +1,78 @@
+package common.bench;
+
+import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.io.HtmlComposite;
+
+/**
+ * Benchmarks writing a tree of {@link HtmlComposite}.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlCompositeBenchmark {
+	
+	@Param({"4", "16"})
+	public int width;
+	
+	@Param({"2", "4"})
+	public int depth;
+	
+	/** The prebuilt composite to write. */
+	private HtmlComposite root;
+	
+	@Setup
+	public void setup() {
+		root = new HtmlComposite() {
+			@Override
+			public void writeTo(Appendable out) throws IOException {
+				writeChildren(out);
+			}
+		};
+		addChildren(root, width, depth);
+	}
+	
+	@Benchmark
+	public String write() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		root.writeTo(sb);
+		return sb.toString();
+	}
+	
+	private static void addChildren(HtmlComposite parent, int width, int depth) {
+		for (int i=0; i<width; ++i) {
+			if (depth > 1) {
+				HtmlComposite div = parent.addDiv("d" + depth + "_" + i);
+				addChildren(div, width, depth - 1);
+			} else {
+				Vector<String> vecData = new Vector<String>();
+				vecData.add("Cell " + i);
+				vecData.add("Value " + i);
+				parent.addTableRow(vecData);
+				parent.addLink("page" + i + ".html", "Title " + i, "Link " + i);
+			}
+		}
+	}
+}
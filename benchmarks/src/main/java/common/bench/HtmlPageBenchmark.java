@@ -0,0 +1,74 @@
+package common.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.base.LogConfig;
+import common.base.Logger;
+import common.html.HtmlPage;
+import common.html.TableHtmlTag;
+
+/**
+ * Benchmarks building and saving a gallery-like {@link HtmlPage} to a temporary file.
+ * The page information messages are not logged.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlPageBenchmark {
+	
+	@Param({"100", "2000"})
+	public int nCells;
+	
+	/** The temporary file to save pages to. */
+	private File file;
+	
+	@Setup
+	public void setup() throws IOException {
+		// Logging each save would measure the console rather than the page
+		Properties props = new Properties();
+		props.setProperty("level.HtmlPage", "WARN");
+		Logger.configure(new LogConfig(props));
+		file = File.createTempFile("HtmlPageBenchmark", ".html");
+	}
+	
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+	
+	@Benchmark
+	public HtmlPage save() {
+		HtmlPage page = new HtmlPage("Benchmark", file.getPath(), "", "style.css", "HtmlPageBenchmark");
+		page.addTitle(1, "Gallery");
+		TableHtmlTag table = page.addFillTable(5, "100%");
+		for (int i=0; i<nCells; ++i) {
+			table.addCell().addImageLink("image" + i + ".html", "Image " + i, "thumbs/image" + i + ".jpg", "image");
+		}
+		page.save();
+		return page;
+	}
+}
@@ -0,0 +1,114 @@
+package common.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.html.HtmlTag;
+import common.html.HtmlTagFactory;
+
+/**
+ * Benchmarks building and rendering a tree of {@link HtmlTag}.
+ * The tree has the specified width (children per node) and depth.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlTagBenchmark {
+	
+	@Param({"4", "16"})
+	public int width;
+	
+	@Param({"2", "4"})
+	public int depth;
+	
+	/** The prebuilt tree to render. */
+	private HtmlTag root;
+	
+	/** A page body with the prebuilt tree as frozen fragment. */
+	private HtmlTag frozenBody;
+	
+	/** Reused output buffer for streaming benchmarks. */
+	private StringBuilder sbOut;
+	
+	@Setup
+	public void setup() {
+		root = buildTree(width, depth);
+		sbOut = new StringBuilder(root.toHtml(0, false).length());
+		frozenBody = new HtmlTag("body");
+		frozenBody.addTag(buildTree(width, depth).freeze());
+	}
+	
+	@Benchmark
+	public HtmlTag build() {
+		return buildTree(width, depth);
+	}
+	
+	@Benchmark
+	public String toHtml() {
+		return root.toHtml(0, false);
+	}
+	
+	@Benchmark
+	public StringBuilder writeTo() throws IOException {
+		sbOut.setLength(0);
+		root.writeTo(sbOut, 0, false);
+		return sbOut;
+	}
+	
+	@Benchmark
+	public StringBuilder writeToFrozen() throws IOException {
+		sbOut.setLength(0);
+		frozenBody.writeTo(sbOut, 0, false);
+		return sbOut;
+	}
+	
+	@Benchmark
+	public String buildAndRender() {
+		return buildTree(width, depth).toHtml(0, false);
+	}
+	
+	/**
+	 * Builds a tree of div elements with links as leaves.
+	 * @param width  the number of children per element
+	 * @param depth  the tree depth
+	 * @return  the root element
+	 */
+	static HtmlTag buildTree(int width, int depth) {
+		HtmlTag root = HtmlTagFactory.div("root");
+		addChildren(root, width, depth);
+		return root;
+	}
+	
+	private static void addChildren(HtmlTag parent, int width, int depth) {
+		for (int i=0; i<width; ++i) {
+			if (depth > 1) {
+				HtmlTag div = HtmlTagFactory.div("d" + depth + "_" + i);
+				div.setClass("myBox");
+				parent.addTag(div);
+				addChildren(div, width, depth - 1);
+			} else {
+				parent.addLink("page" + i + ".html", "Link " + i, "Title " + i, false);
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package common.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.io.SpecialChars;
+
+/**
+ * Benchmarks the {@link SpecialChars} conversions on French text
+ * and on plain ASCII text.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpecialCharsBenchmark {
+	
+	/** A French sentence with accented characters. */
+	private static final String sFrench = "L'\u00e9t\u00e9 \u00e0 la for\u00eat, "
+		+ "une ma\u00eetresse na\u00efve et un gar\u00e7on o\u00f9 la 100% ";
+	
+	/** A sentence without special characters. */
+	private static final String sPlain = "The quick brown fox jumps over the lazy dog. ";
+	
+	@Param({"64", "4096"})
+	public int length;
+	
+	private String sTextFr;
+	private String sTextPlain;
+	private String sTextHtml;
+	
+	@Setup
+	public void setup() {
+		SpecialChars.init();
+		sTextFr = repeat(sFrench, length);
+		sTextPlain = repeat(sPlain, length);
+		sTextHtml = SpecialChars.frToHtml(sTextFr);
+	}
+	
+	@Benchmark
+	public String frToHtml() {
+		return SpecialChars.frToHtml(sTextFr);
+	}
+	
+	@Benchmark
+	public String frToHtmlPlain() {
+		return SpecialChars.frToHtml(sTextPlain);
+	}
+	
+	@Benchmark
+	public String htmlToFr() {
+		return SpecialChars.htmlToFr(sTextHtml);
+	}
+	
+	@Benchmark
+	public String frToTex() {
+		return SpecialChars.frToTex(sTextFr);
+	}
+	
+	/**
+	 * Repeats the specified text up to the specified length.
+	 */
+	private static String repeat(String text, int length) {
+		StringBuilder sb = new StringBuilder(length + text.length());
+		while (sb.length() < length) {
+			sb.append(text);
+		}
+		sb.setLength(length);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,77 @@
+package common.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.html.HtmlTagFactory;
+import common.html.TableHtmlTag;
+
+/**
+ * Benchmarks building and rendering an auto-filled {@link TableHtmlTag}
+ * of image cells, as used by gallery pages.
+ *
+ * <p>Run with <code>-prof gc</code>, the allocation of the build benchmark
+ * is the memory footprint of the table, with 3 tags per cell.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableHtmlTagBenchmark {
+	
+	@Param({"100", "2000"})
+	public int nCells;
+	
+	@Param({"5"})
+	public int nCellsPerRow;
+	
+	/** The cell texts, created once so that they do not count in the table footprint. */
+	private String[] sHrefs;
+	private String[] sTitles;
+	private String[] sSources;
+	
+	@Setup
+	public void setup() {
+		sHrefs = new String[nCells];
+		sTitles = new String[nCells];
+		sSources = new String[nCells];
+		for (int i=0; i<nCells; ++i) {
+			sHrefs[i] = "images/image" + i + ".html";
+			sTitles[i] = "Image " + i;
+			sSources[i] = "thumbs/image" + i + ".jpg";
+		}
+	}
+	
+	@Benchmark
+	public TableHtmlTag build() {
+		TableHtmlTag table = new TableHtmlTag(nCellsPerRow, true);
+		for (int i=0; i<nCells; ++i) {
+			table.addCell(HtmlTagFactory.imageLink(sHrefs[i], sTitles[i], sSources[i], "image"));
+		}
+		return table;
+	}
+	
+	@Benchmark
+	public String autoFillTable() {
+		// The table is rebuilt each time, since auto-fill modifies it when rendering
+		return build().toHtml(0, false);
+	}
+}
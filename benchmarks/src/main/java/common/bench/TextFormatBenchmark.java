@@ -0,0 +1,74 @@
+package common.bench;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.text.DurationFormat;
+import common.text.ElapsedTimeDateFormat;
+import common.text.FileSizeNumberFormat;
+import common.text.WeekNumberFormat;
+
+/**
+ * Benchmarks the formatters of the common.text package.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextFormatBenchmark {
+	
+	private DurationFormat durationFormat;
+	private FileSizeNumberFormat fileSizeFormat;
+	private WeekNumberFormat weekNumberFormat;
+	private ElapsedTimeDateFormat elapsedTimeFormat;
+	private Date date;
+	private int iWeek;
+	
+	@Setup
+	public void setup() {
+		durationFormat = new DurationFormat();
+		fileSizeFormat = new FileSizeNumberFormat();
+		weekNumberFormat = new WeekNumberFormat();
+		elapsedTimeFormat = new ElapsedTimeDateFormat();
+		date = new Date(System.currentTimeMillis() - 3*24*3600*1000l);
+	}
+	
+	@Benchmark
+	public String duration() {
+		return durationFormat.format(3*3600*1000l + 83123l);
+	}
+	
+	@Benchmark
+	public String fileSize() {
+		return fileSizeFormat.format(123456789l);
+	}
+	
+	@Benchmark
+	public String weekNumber() {
+		iWeek = iWeek % 53 + 1;
+		return weekNumberFormat.format(iWeek);
+	}
+	
+	@Benchmark
+	public String elapsedTime() {
+		return elapsedTimeFormat.format(date);
+	}
+}
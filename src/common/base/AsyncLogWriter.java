@@ -0,0 +1,275 @@
+package common.base;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous writer of log messages.
+ *
+ * <p>Logging threads put records in a fixed size lock-free ring buffer,
+ * without formatting them. A background thread takes the records
+ * from the buffer and writes them to a sink, flushing it after each batch.
+ *
+ * <p>The overflow policy tells what happens to messages logged when
+ * the buffer is full. Remaining messages are written on {@link #close()},
+ * which is also called at JVM shutdown.
+ *
+ * @author nicz
+ *
+ */
+public class AsyncLogWriter {
+
+	/**
+	 * What to do with a message logged when the buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/** Wait until the message can be put in the buffer. */
+		BLOCK,
+		/** Drop the message. */
+		DROP,
+		/** Keep one message of every {@link AsyncLogWriter#SAMPLE_RATE}, and drop the others. */
+		SAMPLE;
+	}
+
+	/** The number of overflowed messages per kept message, with the sample policy */
+	public static final int SAMPLE_RATE = 100;
+
+	/** The maximum number of messages written in a batch */
+	private static final int MAX_BATCH = 256;
+
+	/** The time to wait when the buffer is empty or full, in nanoseconds */
+	private static final long WAIT_NANOS = 1000000L;
+
+	/** The ring buffer of messages. Null slots are free or not yet published. */
+	private final AtomicReferenceArray<LogRecord> slots;
+
+	/** The number of slots minus one, to get a slot index from a sequence number */
+	private final int mask;
+
+	/** The sequence number of the next slot to fill */
+	private final AtomicLong tail;
+
+	/** The sequence number of the next slot to read. Only changed by the writer thread. */
+	private volatile long head;
+
+	/** The number of messages written to the sink. Only changed by the writer thread. */
+	private volatile long nWritten;
+
+	/** The number of dropped messages */
+	private final AtomicLong nDropped;
+
+	/** The number of overflowed messages, for sampling */
+	private final AtomicLong nOverflowed;
+
+	private final OverflowPolicy policy;
+
+	/** The sink to write records to */
+	private final LogSink sink;
+
+	private final Thread writerThread;
+
+	private final Thread shutdownHook;
+
+	private volatile boolean isRunning;
+
+	/**
+	 * Constructor. Starts the writer thread.
+	 *
+	 * @param sink		the sink to write records to
+	 * @param capacity	the minimum number of messages in the buffer, rounded up to a power of two
+	 * @param policy	what to do with messages logged when the buffer is full
+	 */
+	public AsyncLogWriter(LogSink sink, int capacity, OverflowPolicy policy) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid log buffer capacity: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.slots = new AtomicReferenceArray<LogRecord>(size);
+		this.mask = size - 1;
+		this.tail = new AtomicLong();
+		this.head = 0;
+		this.nWritten = 0;
+		this.nDropped = new AtomicLong();
+		this.nOverflowed = new AtomicLong();
+		this.policy = policy;
+		this.sink = sink;
+		this.isRunning = true;
+
+		this.writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runWriter();
+			}
+		}, "AsyncLogWriter");
+		this.writerThread.setDaemon(true);
+		this.shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stop();
+			}
+		}, "AsyncLogWriter-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Puts a record in the buffer, to be written by the writer thread.
+	 *
+	 * @param rec		the record to write
+	 * @return false if this writer is closed and the record was not handled,
+	 * 		true if the record was put in the buffer or dropped because of overflow.
+	 */
+	public boolean log(LogRecord rec) {
+		if (!isRunning) {
+			return false;
+		}
+		if (offer(rec)) {
+			return true;
+		}
+
+		switch (policy) {
+		case DROP:
+			nDropped.incrementAndGet();
+			return true;
+		case SAMPLE:
+			if (nOverflowed.incrementAndGet() % SAMPLE_RATE != 0) {
+				nDropped.incrementAndGet();
+				return true;
+			}
+			break;
+		default:
+			break;
+		}
+
+		while (!offer(rec)) {
+			if (!isRunning) {
+				return false;
+			}
+			LockSupport.unpark(writerThread);
+			LockSupport.parkNanos(WAIT_NANOS);
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until all messages logged before this call are written.
+	 */
+	public void flush() {
+		long nLogged = tail.get();
+		while (nWritten < nLogged && writerThread.isAlive()) {
+			LockSupport.unpark(writerThread);
+			LockSupport.parkNanos(WAIT_NANOS);
+		}
+	}
+
+	/**
+	 * Writes the remaining messages and stops the writer thread.
+	 * Messages logged afterwards are not handled.
+	 * The sink is flushed but not closed.
+	 */
+	public void close() {
+		stop();
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException exc) {
+			// JVM is already shutting down
+		}
+	}
+
+	/**
+	 * @return the number of messages dropped because the buffer was full.
+	 */
+	public long getDroppedCount() {
+		return nDropped.get();
+	}
+
+	/**
+	 * Tries to put a message in the buffer.
+	 * @return false if the buffer is full
+	 */
+	private boolean offer(LogRecord rec) {
+		while (true) {
+			long seq = tail.get();
+			if (seq - head > mask) {
+				return false;
+			}
+			if (tail.compareAndSet(seq, seq + 1)) {
+				slots.set((int) (seq & mask), rec);
+				return true;
+			}
+		}
+	}
+
+	private void stop() {
+		isRunning = false;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Main loop of the writer thread.
+	 */
+	private void runWriter() {
+		long nReportedDrops = 0;
+		while (true) {
+			// Read the flag before draining, so no message is left behind on stop
+			boolean isStopping = !isRunning;
+			int nBatch = 0;
+			try {
+				nBatch = drain();
+
+				long nDrops = nDropped.get();
+				if (nDrops > nReportedDrops) {
+					sink.write(new LogRecord(System.currentTimeMillis(), LogLevel.WARN, "Logger",
+							(nDrops - nReportedDrops) + " messages dropped, log buffer full", null));
+					nReportedDrops = nDrops;
+					sink.flush();
+				} else if (nBatch > 0) {
+					sink.flush();
+				}
+			} catch (IOException exc) {
+				System.err.println("Failed to write log messages: " + exc.getMessage());
+			}
+			nWritten = head;
+
+			if (nBatch == 0) {
+				if (isStopping && head == tail.get()) {
+					return;
+				}
+				LockSupport.parkNanos(WAIT_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Writes a batch of records from the buffer to the sink and frees their slots.
+	 * Stops at the first slot claimed by a logging thread but not yet filled.
+	 * The slot of a record failing to be written is freed too.
+	 * @return the number of records taken from the buffer
+	 */
+	private int drain() throws IOException {
+		int nBatch = 0;
+		while (nBatch < MAX_BATCH) {
+			long seq = head;
+			int index = (int) (seq & mask);
+			LogRecord rec = slots.get(index);
+			if (rec == null) {
+				break;
+			}
+			slots.lazySet(index, null);
+			head = seq + 1;
+			++nBatch;
+			sink.write(rec);
+		}
+		return nBatch;
+	}
+}
@@ -1,8 +1,16 @@
 package common.base;
 
+import java.util.Arrays;
+
 /**
  * Utility class to compute the duration of a task.
- * Uses the system time, with millisecond precision.
+ * Uses the system high-resolution monotonic timer, with nanosecond precision,
+ * and the system time only for start and stop timestamps.
+ * 
+ * <p>The chronometer may be paused and resumed, and lap times may
+ * be taken while it runs. Durations may be recorded in a
+ * {@link LatencyHistogram} shared by many threads. A chronometer itself
+ * must only be used by one thread.
  * 
  * @author nicz
  *
@@ -11,18 +19,40 @@ public class Chronometer {
 	
 	private long tStart, tStop;
 	
+	/** The timer value when last started or resumed, in nanoseconds */
+	private long nStart;
+	
+	/** The elapsed time before the last pause, in nanoseconds */
+	private long nElapsed;
+	
+	/** The elapsed time at the last lap, in nanoseconds */
+	private long nLapStart;
+	
+	/** The lap times, in nanoseconds */
+	private long[] laps;
+	private int nLaps;
+	
+	private boolean isRunning;
+	
 	/**
 	 * Constructor. Initializes start time
 	 */
 	public Chronometer() {
-		tStart = System.currentTimeMillis();
+		restart();
 	}
 	
 	/**
-	 * Resets the start time at the current time
+	 * Resets the start time at the current time, and removes the laps
 	 */
 	public void restart() {
 		tStart = System.currentTimeMillis();
+		tStop = tStart;
+		nStart = System.nanoTime();
+		nElapsed = 0;
+		nLapStart = 0;
+		laps = null;
+		nLaps = 0;
+		isRunning = true;
 	}
 	
 	/**
@@ -31,35 +61,125 @@ public class Chronometer {
 	 * @return the elapsed time in milliseconds.
 	 */
 	public long stop() {
+		pause();
 		tStop = System.currentTimeMillis();
-		return tStop - tStart;
+		return getElapsedTime();
+	}
+	
+	/**
+	 * Stops the timer and records the elapsed time in a histogram.
+	 * 
+	 * @param histogram the histogram recording the elapsed time
+	 * @return the elapsed time in milliseconds.
+	 */
+	public long stop(LatencyHistogram histogram) {
+		long tElapsed = stop();
+		histogram.record(nElapsed);
+		return tElapsed;
+	}
+	
+	/**
+	 * Pauses the timer. The time until {@link #resume()} is not counted.
+	 * No effect if already paused or stopped.
+	 */
+	public void pause() {
+		if (isRunning) {
+			nElapsed += System.nanoTime() - nStart;
+			isRunning = false;
+		}
+	}
+	
+	/**
+	 * Resumes the timer after a pause or stop.
+	 * No effect if running.
+	 */
+	public void resume() {
+		if (!isRunning) {
+			nStart = System.nanoTime();
+			isRunning = true;
+		}
+	}
+	
+	/**
+	 * @return true if the timer is running, false if paused or stopped.
+	 */
+	public boolean isRunning() {
+		return isRunning;
+	}
+	
+	/**
+	 * Takes a lap time: the time elapsed since the previous lap,
+	 * or since the start for the first lap.
+	 * 
+	 * @return the lap time in nanoseconds.
+	 */
+	public long lap() {
+		long nNow = getElapsedNanos();
+		long nLap = nNow - nLapStart;
+		nLapStart = nNow;
+		if (laps == null) {
+			laps = new long[8];
+		} else if (nLaps == laps.length) {
+			laps = Arrays.copyOf(laps, 2*nLaps);
+		}
+		laps[nLaps++] = nLap;
+		return nLap;
+	}
+	
+	/**
+	 * Takes a lap time and records it in a histogram.
+	 * 
+	 * @param histogram the histogram recording the lap time
+	 * @return the lap time in nanoseconds.
+	 */
+	public long lap(LatencyHistogram histogram) {
+		long nLap = lap();
+		histogram.record(nLap);
+		return nLap;
+	}
+	
+	/**
+	 * @return the lap times in nanoseconds, from the first to the last.
+	 */
+	public long[] getLaps() {
+		return (laps == null ? new long[0] : Arrays.copyOf(laps, nLaps));
 	}
 	
 	public long getStart() {
 		return tStart;
 	}
-
+	
 	public long getStop() {
 		return tStop;
 	}
 	
 	/**
-	 * Gets the elapsed time in milliseconds.
+	 * Gets the elapsed time in milliseconds,
+	 * excluding pauses. Includes the current run if running.
 	 * 
 	 * @return the elapsed time in milliseconds.
 	 */
 	public long getElapsedTime() {
-		return tStop - tStart;
+		return getElapsedNanos() / 1000000L;
 	}
-
+	
+	/**
+	 * Gets the elapsed time in nanoseconds,
+	 * excluding pauses. Includes the current run if running.
+	 * 
+	 * @return the elapsed time in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return (isRunning ? nElapsed + System.nanoTime() - nStart : nElapsed);
+	}
+	
 	/**
 	 * Gets the average time it took to perform a given number of tasks.
 	 * 
 	 * @param nTasks the number of tasks performed.
-	 * @return average time per task in milliseconds
+	 * @return average time per task in milliseconds, with sub-millisecond precision
 	 */
 	public double getAverageTime(int nTasks) {
-		long tElapsed = getElapsedTime();
-		return (double)tElapsed/(double)nTasks;
+		return getElapsedNanos()/1e6/(double)nTasks;
 	}
 }
@@ -0,0 +1,101 @@
+package common.base;
+
+/**
+ * An event of the library recorded by Java Flight Recorder (JFR),
+ * like saving a page or loading a module, with a name, a size and a duration.
+ *
+ * <p>Usage:
+ * <pre>
+ * FlightEvent event = FlightEvent.begin(FlightEvent.Type.PAGE_SAVE, sFilename);
+ * try {
+ *     ...
+ * } finally {
+ *     event.end(nChars);
+ * }
+ * </pre>
+ *
+ * <p>When JFR is not recording the event type, or on a JVM without JFR,
+ * {@link #begin} returns a shared event doing nothing, so events cost
+ * almost nothing when not recorded.
+ * The JFR event classes are only loaded if JFR is available.
+ *
+ * @author nicz
+ *
+ */
+public class FlightEvent {
+
+	/**
+	 * The types of recorded events.
+	 */
+	public enum Type {
+		/** Saving an HTML page to a file, with the file size in bytes */
+		PAGE_SAVE,
+		/** Rendering an HTML element, with the number of characters */
+		HTML_RENDER,
+		/** Loading a UI module */
+		MODULE_LOAD,
+		/** Loading an icon image, with the file size in bytes */
+		ICON_LOAD,
+		/** Running a task notified to a progress listener, with the number of steps */
+		TASK;
+	}
+
+	/** True if the JFR event API is available in this JVM */
+	private static final boolean isAvailable = isJfrAvailable();
+
+	/** The event doing nothing */
+	static final FlightEvent NONE = new FlightEvent();
+
+	/**
+	 * Constructor of the event doing nothing.
+	 */
+	FlightEvent() {
+	}
+
+	/**
+	 * Begins an event, which must be ended with {@link #end(long)}.
+	 *
+	 * @param type the event type
+	 * @param name the name of the page, element, module or task
+	 * @return the begun event, or an event doing nothing if the type is not recorded
+	 */
+	public static FlightEvent begin(Type type, String name) {
+		if (!isAvailable) {
+			return NONE;
+		}
+		return JfrEvents.begin(type, name);
+	}
+
+	/**
+	 * @return true if this event is recorded, to skip computing an expensive size otherwise.
+	 */
+	public boolean isRecording() {
+		return false;
+	}
+
+	/**
+	 * Ends this event and commits it to the recording.
+	 *
+	 * @param size the size of the saved, rendered or loaded data, or the number of steps
+	 */
+	public void end(long size) {
+	}
+
+	/**
+	 * Ends this event without size and commits it to the recording.
+	 */
+	public void end() {
+		end(0);
+	}
+
+	private static boolean isJfrAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException exc) {
+			return false;
+		} catch (LinkageError err) {
+			return false;
+		}
+	}
+}
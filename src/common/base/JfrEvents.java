@@ -0,0 +1,116 @@
+package common.base;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JFR event classes of {@link FlightEvent}.
+ * Only loaded if the JFR event API is available.
+ *
+ * @author nicz
+ *
+ */
+class JfrEvents {
+
+	/**
+	 * Creates and begins a JFR event of the given type.
+	 * @return the begun event, or the event doing nothing if the type is not recorded
+	 */
+	static FlightEvent begin(FlightEvent.Type type, String name) {
+		LibraryEvent event;
+		switch (type) {
+		case PAGE_SAVE:
+			event = new PageSaveEvent();
+			break;
+		case HTML_RENDER:
+			event = new HtmlRenderEvent();
+			break;
+		case MODULE_LOAD:
+			event = new ModuleLoadEvent();
+			break;
+		case ICON_LOAD:
+			event = new IconLoadEvent();
+			break;
+		default:
+			event = new TaskEvent();
+			break;
+		}
+		if (!event.isEnabled()) {
+			return FlightEvent.NONE;
+		}
+		event.name = name;
+		event.begin();
+		return new RecordedEvent(event);
+	}
+
+	/**
+	 * A begun JFR event, committed when ended.
+	 */
+	private static class RecordedEvent extends FlightEvent {
+		private final LibraryEvent event;
+
+		RecordedEvent(LibraryEvent event) {
+			this.event = event;
+		}
+
+		@Override
+		public boolean isRecording() {
+			return true;
+		}
+
+		@Override
+		public void end(long size) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.size = size;
+				event.commit();
+			}
+		}
+	}
+
+	@Category("Common Library")
+	abstract static class LibraryEvent extends Event {
+		@Label("Name")
+		String name;
+
+		@Label("Size")
+		long size;
+	}
+
+	@Name("common.PageSave")
+	@Label("Page Save")
+	@Description("Saving an HTML page to a file, with the file size in bytes")
+	static class PageSaveEvent extends LibraryEvent {
+	}
+
+	@Name("common.HtmlRender")
+	@Label("HTML Render")
+	@Description("Rendering an HTML element to a string, with the number of characters")
+	@Threshold("1 ms")
+	@StackTrace(false)
+	static class HtmlRenderEvent extends LibraryEvent {
+	}
+
+	@Name("common.ModuleLoad")
+	@Label("Module Load")
+	@Description("Loading a UI module")
+	static class ModuleLoadEvent extends LibraryEvent {
+	}
+
+	@Name("common.IconLoad")
+	@Label("Icon Load")
+	@Description("Loading an icon image, with the file size in bytes")
+	static class IconLoadEvent extends LibraryEvent {
+	}
+
+	@Name("common.Task")
+	@Label("Task")
+	@Description("Running a task notified to a progress listener, with the number of steps")
+	static class TaskEvent extends LibraryEvent {
+	}
+}
@@ -0,0 +1,200 @@
+package common.base;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, to compute percentiles
+ * like the median or the 99th percentile.
+ *
+ * <p>Durations below 128 ns are counted exactly. Larger durations are
+ * counted in logarithmic buckets, 64 per power of two, so that
+ * percentiles have a relative error below 2%.
+ * The histogram uses a fixed amount of memory, about 30 KB.
+ *
+ * <p>Durations may be recorded by many threads at the same time, without locking.
+ * Percentiles read while durations are recorded may miss the latest durations.
+ *
+ * @author nicz
+ *
+ */
+public class LatencyHistogram {
+
+	/** The number of durations counted exactly */
+	private static final int N_EXACT = 128;
+
+	/** The number of bits of the sub-buckets per power of two */
+	private static final int SUB_BITS = 6;
+
+	private static final int N_SUB = 1 << SUB_BITS;
+
+	/** The power of two of the first logarithmic bucket */
+	private static final int FIRST_EXPONENT = 7;
+
+	private static final int N_BUCKETS = N_EXACT + (63 - FIRST_EXPONENT)*N_SUB;
+
+	private final AtomicLongArray counts;
+	private final LongAdder nCount;
+	private final LongAdder total;
+	private final AtomicLong max;
+
+	/**
+	 * Constructor.
+	 */
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(N_BUCKETS);
+		nCount = new LongAdder();
+		total = new LongAdder();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos the duration in nanoseconds. Negative durations are counted as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(getIndex(nanos));
+		nCount.increment();
+		total.add(nanos);
+		long currentMax = max.get();
+		while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Records the durations of another histogram.
+	 *
+	 * @param other the histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i=0; i<N_BUCKETS; ++i) {
+			long n = other.counts.get(i);
+			if (n > 0) {
+				counts.addAndGet(i, n);
+			}
+		}
+		nCount.add(other.getCount());
+		total.add(other.total.sum());
+		long otherMax = other.getMax();
+		long currentMax = max.get();
+		while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Removes all recorded durations.
+	 * Durations recorded during the reset may be partially removed.
+	 */
+	public void reset() {
+		for (int i=0; i<N_BUCKETS; ++i) {
+			counts.set(i, 0);
+		}
+		nCount.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	/**
+	 * @return the number of recorded durations.
+	 */
+	public long getCount() {
+		return nCount.sum();
+	}
+
+	/**
+	 * @return the longest recorded duration in nanoseconds, or 0 if none.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean recorded duration in nanoseconds, or 0 if none.
+	 */
+	public double getMean() {
+		long n = nCount.sum();
+		return (n == 0 ? 0 : (double) total.sum() / n);
+	}
+
+	/**
+	 * Gets a percentile of the recorded durations.
+	 *
+	 * @param percent the percentage of durations, between 0 and 100, like 99 for the 99th percentile
+	 * @return the duration in nanoseconds which is longer than or equal to the given percentage
+	 * 		of recorded durations, or 0 if none.
+	 */
+	public long getPercentile(double percent) {
+		long[] snapshot = new long[N_BUCKETS];
+		long n = 0;
+		for (int i=0; i<N_BUCKETS; ++i) {
+			snapshot[i] = counts.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(percent / 100.0 * n);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long nBelow = 0;
+		for (int i=0; i<N_BUCKETS; ++i) {
+			nBelow += snapshot[i];
+			if (nBelow >= rank) {
+				return Math.min(getHighestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Gets a summary of the recorded durations, in milliseconds, like
+	 * 'count=120 mean=0.153 p50=0.120 p90=0.310 p99=0.870 max=1.204 ms'.
+	 *
+	 * @return the summary
+	 */
+	public String getSummary() {
+		return String.format("count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f max=%.3f ms",
+				getCount(), getMean() / 1e6,
+				getPercentile(50) / 1e6, getPercentile(90) / 1e6, getPercentile(99) / 1e6,
+				getMax() / 1e6);
+	}
+
+	@Override
+	public String toString() {
+		return getSummary();
+	}
+
+	/**
+	 * @return the index of the bucket counting the given duration.
+	 */
+	private static int getIndex(long nanos) {
+		if (nanos < N_EXACT) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (N_SUB - 1);
+		return N_EXACT + (exponent - FIRST_EXPONENT)*N_SUB + sub;
+	}
+
+	/**
+	 * @return the highest duration counted in the given bucket.
+	 */
+	private static long getHighestValue(int index) {
+		if (index < N_EXACT) {
+			return index;
+		}
+		int exponent = FIRST_EXPONENT + (index - N_EXACT) / N_SUB;
+		long sub = (index - N_EXACT) % N_SUB;
+		long lowest = (N_SUB + sub) << (exponent - SUB_BITS);
+		return lowest + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
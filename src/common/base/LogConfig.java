@@ -0,0 +1,185 @@
+package common.base;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Logging configuration, loaded from properties like:
+ * <pre>
+ * # Level of units without a more specific level (default: INFO, or DEBUG with debug flags)
+ * level = INFO
+ * # Level of a unit, or of all units whose name starts with a dotted prefix
+ * level.HtmlPage = DEBUG
+ * level.export = WARN
+ * # Sinks, among console, file and memory (default: console)
+ * sinks = console, file
+ * # Format of all sinks, text or json (default: text)
+ * format = json
+ * file.path = logs/app.log
+ * file.maxSize = 10000000
+ * file.maxAgeHours = 24
+ * file.keptFiles = 5
+ * memory.size = 1000
+ * # Asynchronous logging, see AsyncLogWriter (default: false)
+ * async = true
+ * async.capacity = 8192
+ * async.policy = DROP
+ * </pre>
+ *
+ * <p>The level of a unit named 'export.Pdf' is the level of 'export.Pdf'
+ * if set, otherwise the level of 'export', otherwise the root level.
+ *
+ * @author nicz
+ *
+ */
+public class LogConfig {
+
+	/** The root level, or null if not set */
+	private final LogLevel rootLevel;
+
+	/** The levels of units and unit name prefixes */
+	private final Map<String, LogLevel> mapLevels;
+
+	private final Properties props;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param props the logging properties
+	 * @throws IllegalArgumentException if a level or number is invalid
+	 */
+	public LogConfig(Properties props) {
+		this.props = props;
+		this.mapLevels = new HashMap<String, LogLevel>();
+		for (String sKey : props.stringPropertyNames()) {
+			if (sKey.startsWith("level.")) {
+				mapLevels.put(sKey.substring(6), parseLevel(props.getProperty(sKey)));
+			}
+		}
+		String sRootLevel = props.getProperty("level");
+		this.rootLevel = (sRootLevel == null ? null : parseLevel(sRootLevel));
+	}
+
+	/**
+	 * Loads the configuration from a properties file.
+	 *
+	 * @param sFilename the path of the properties file
+	 * @return the loaded configuration
+	 * @throws IOException if the file can not be read
+	 * @throws IllegalArgumentException if a level or number is invalid
+	 */
+	public static LogConfig load(String sFilename) throws IOException {
+		Properties props = new Properties();
+		InputStream in = new FileInputStream(sFilename);
+		try {
+			props.load(in);
+		} finally {
+			in.close();
+		}
+		return new LogConfig(props);
+	}
+
+	/**
+	 * Gets the configured level of a unit.
+	 *
+	 * @param unitName the unit name
+	 * @return the level of the unit or of the longest matching prefix,
+	 * 		otherwise the root level, or null if no level is set.
+	 */
+	public LogLevel getLevel(String unitName) {
+		String sName = unitName;
+		while (sName != null) {
+			LogLevel level = mapLevels.get(sName);
+			if (level != null) {
+				return level;
+			}
+			int iDot = sName.lastIndexOf('.');
+			sName = (iDot > 0 ? sName.substring(0, iDot) : null);
+		}
+		return rootLevel;
+	}
+
+	/**
+	 * @return true if the sinks write JSON lines.
+	 */
+	public boolean isJson() {
+		return "json".equalsIgnoreCase(props.getProperty("format", "text").trim());
+	}
+
+	/**
+	 * @return true if asynchronous logging is configured.
+	 */
+	public boolean isAsync() {
+		return Boolean.parseBoolean(props.getProperty("async", "false").trim());
+	}
+
+	/**
+	 * @return the number of messages in the asynchronous logging buffer.
+	 */
+	public int getAsyncCapacity() {
+		return (int) getNumber("async.capacity", 8192);
+	}
+
+	/**
+	 * @return the overflow policy of asynchronous logging.
+	 */
+	public AsyncLogWriter.OverflowPolicy getAsyncPolicy() {
+		return AsyncLogWriter.OverflowPolicy.valueOf(
+				props.getProperty("async.policy", "BLOCK").trim().toUpperCase());
+	}
+
+	/**
+	 * Creates the configured sinks.
+	 *
+	 * @return the created sinks
+	 * @throws IOException if a log file can not be opened
+	 * @throws IllegalArgumentException if a sink is unknown
+	 */
+	public List<LogSink> createSinks() throws IOException {
+		List<LogSink> listSinks = new ArrayList<LogSink>();
+		boolean isJson = isJson();
+		for (String sSink : props.getProperty("sinks", "console").split(",")) {
+			sSink = sSink.trim();
+			if (sSink.equals("console")) {
+				listSinks.add(WriterLogSink.console(isJson));
+			} else if (sSink.equals("file")) {
+				listSinks.add(new RollingFileLogSink(props.getProperty("file.path", "app.log").trim(),
+						getNumber("file.maxSize", 0),
+						getNumber("file.maxAgeHours", 0) * 3600000L,
+						(int) getNumber("file.keptFiles", 5),
+						isJson));
+			} else if (sSink.equals("memory")) {
+				listSinks.add(new MemoryLogSink((int) getNumber("memory.size", 1000), isJson));
+			} else if (sSink.length() > 0) {
+				throw new IllegalArgumentException("Unknown log sink: " + sSink);
+			}
+		}
+		return listSinks;
+	}
+
+	private long getNumber(String sKey, long defaultValue) {
+		String sValue = props.getProperty(sKey);
+		if (sValue == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(sValue.trim());
+		} catch (NumberFormatException exc) {
+			throw new IllegalArgumentException("Invalid number for log property " + sKey + ": " + sValue);
+		}
+	}
+
+	private static LogLevel parseLevel(String sLevel) {
+		try {
+			return LogLevel.valueOf(sLevel.trim().toUpperCase());
+		} catch (IllegalArgumentException exc) {
+			throw new IllegalArgumentException("Invalid log level: " + sLevel);
+		}
+	}
+}
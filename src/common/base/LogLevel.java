@@ -0,0 +1,28 @@
+package common.base;
+
+/**
+ * Logging levels, from the most to the least verbose.
+ * 
+ * @author nicz
+ *
+ */
+public enum LogLevel {
+	
+	DEBUG ("[debug]"),
+	INFO  ("[info]"),
+	WARN  ("[WARN]"),
+	ERROR ("[ERROR]");
+	
+	private final String label;
+	
+	LogLevel(String label) {
+		this.label = label;
+	}
+	
+	/**
+	 * @return the label printed in text log lines, like "[info]".
+	 */
+	public String getLabel() {
+		return label;
+	}
+}
@@ -0,0 +1,179 @@
+package common.base;
+
+/**
+ * A logged message, with optional key/value fields.
+ *
+ * <p>Records are formatted either as text lines, like
+ * <pre>2026.10.17 14:05:09  [info]   HtmlPage: Saved page file=a.html</pre>
+ * or as JSON lines, like
+ * <pre>{"time":"2026.10.17 14:05:09","level":"INFO","unit":"HtmlPage","msg":"Saved page","file":"a.html"}</pre>
+ *
+ * @author nicz
+ *
+ */
+public class LogRecord {
+
+	/** Width of the level label, like "[info]" */
+	private static final int LEVEL_WIDTH = 7;
+
+	/** Width of the unit name */
+	private static final int UNIT_WIDTH = 10;
+
+	private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+	private final long time;
+	private final LogLevel level;
+	private final String unitName;
+	private final String msg;
+
+	/** Keys and values of the fields, alternating. May be null. */
+	private final Object[] fields;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param time		the time of the message, in milliseconds since the epoch
+	 * @param level		the message level
+	 * @param unitName	the name of the unit sending the message
+	 * @param msg		the message
+	 * @param fields	keys and values of the fields, alternating, or null
+	 */
+	public LogRecord(long time, LogLevel level, String unitName, String msg, Object[] fields) {
+		this.time = time;
+		this.level = level;
+		this.unitName = unitName;
+		this.msg = msg;
+		this.fields = fields;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public LogLevel getLevel() {
+		return level;
+	}
+
+	public String getUnitName() {
+		return unitName;
+	}
+
+	public String getMessage() {
+		return msg;
+	}
+
+	/**
+	 * Appends this record as a text line, ending with a line separator.
+	 * Fields are appended after the message as key=value.
+	 *
+	 * @param sb the string builder to append to
+	 */
+	public void appendText(StringBuilder sb) {
+		Logger.timestampFormat.format(time, sb);
+		sb.append(' ');
+		pad(sb, level.getLabel(), LEVEL_WIDTH);
+		sb.append(' ');
+		pad(sb, unitName, UNIT_WIDTH);
+		sb.append(": ").append(msg);
+		if (fields != null) {
+			for (int i=0; i<fields.length; i+=2) {
+				sb.append(' ').append(fields[i]).append('=').append(getValue(i));
+			}
+		}
+		sb.append(Logger.LINE_SEPARATOR);
+	}
+
+	/**
+	 * Appends this record as a JSON object on one line, ending with a line separator.
+	 * Numbers and booleans are written as JSON values, other fields as strings.
+	 * Floating point NaN and infinities are written as strings, like "NaN".
+	 *
+	 * @param sb the string builder to append to
+	 */
+	public void appendJson(StringBuilder sb) {
+		sb.append("{\"time\":\"");
+		Logger.timestampFormat.format(time, sb);
+		sb.append("\",\"level\":\"").append(level.name());
+		sb.append("\",\"unit\":");
+		appendJsonString(sb, unitName);
+		sb.append(",\"msg\":");
+		appendJsonString(sb, msg);
+		if (fields != null) {
+			for (int i=0; i<fields.length; i+=2) {
+				sb.append(',');
+				appendJsonString(sb, String.valueOf(fields[i]));
+				sb.append(':');
+				Object value = getValue(i);
+				if (isNonFinite(value)) {
+					// NaN and infinities are not valid JSON numbers
+					appendJsonString(sb, value.toString());
+				} else if (value instanceof Number || value instanceof Boolean) {
+					sb.append(value);
+				} else if (value == null) {
+					sb.append("null");
+				} else {
+					appendJsonString(sb, value.toString());
+				}
+			}
+		}
+		sb.append('}').append(Logger.LINE_SEPARATOR);
+	}
+
+	/**
+	 * @return true if the value is a floating point NaN or infinity.
+	 */
+	private static boolean isNonFinite(Object value) {
+		if (value instanceof Double) {
+			double d = ((Double) value).doubleValue();
+			return Double.isNaN(d) || Double.isInfinite(d);
+		}
+		if (value instanceof Float) {
+			float f = ((Float) value).floatValue();
+			return Float.isNaN(f) || Float.isInfinite(f);
+		}
+		return false;
+	}
+
+	/**
+	 * @return the value of the field whose key is at the given index,
+	 * 		or null if the key has no value.
+	 */
+	private Object getValue(int iKey) {
+		return (iKey + 1 < fields.length ? fields[iKey + 1] : null);
+	}
+
+	private static void pad(StringBuilder sb, String text, int width) {
+		if (text == null) {
+			text = "null";
+		}
+		for (int i=text.length(); i<width; ++i) {
+			sb.append(' ');
+		}
+		sb.append(text);
+	}
+
+	private static void appendJsonString(StringBuilder sb, String text) {
+		if (text == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i=0; i<text.length(); ++i) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '"':  sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n");  break;
+			case '\r': sb.append("\\r");  break;
+			case '\t': sb.append("\\t");  break;
+			default:
+				if (c < 0x20) {
+					sb.append("\\u00").append(hexDigits[c >> 4]).append(hexDigits[c & 0xf]);
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,36 @@
+package common.base;
+
+import java.io.IOException;
+
+/**
+ * A destination of log records, like the console or a file.
+ * 
+ * <p>Records are written by logging threads, or by a single background
+ * thread when asynchronous logging is started, so implementations
+ * must be thread-safe. Written records may be buffered until
+ * {@link #flush()} is called.
+ * 
+ * @author nicz
+ *
+ */
+public interface LogSink {
+	
+	/**
+	 * Writes a log record.
+	 * @param rec the record to write
+	 * @throws IOException if writing fails
+	 */
+	void write(LogRecord rec) throws IOException;
+	
+	/**
+	 * Writes buffered records.
+	 * @throws IOException if writing fails
+	 */
+	void flush() throws IOException;
+	
+	/**
+	 * Writes buffered records and releases resources like files.
+	 * @throws IOException if writing fails
+	 */
+	void close() throws IOException;
+}
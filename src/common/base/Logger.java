@@ -1,25 +1,72 @@
 package common.base;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import common.text.TimestampFormat;
 
 /**
  * Simple logging class
  * with four logging levels: debug, info, warning, error
  * 
+ * <p>By default, info, warning and error messages are printed
+ * to the standard output, and debug messages are printed
+ * if both the global and local debug flags are set.
+ * 
+ * <p>The level of each unit and the sinks where messages are written
+ * can be configured with {@link #configure(LogConfig)}, or at startup
+ * with a properties file given by the system property
+ * {@value #CONFIG_PROPERTY}. See {@link LogConfig} for the properties.
+ * 
+ * <p>Messages are written to the sinks by the logging thread,
+ * unless asynchronous logging is started with {@link #startAsync}.
+ * 
  * @author nicz
  *
  */
 public class Logger {
 	
+	/** The system property giving the path of the logging properties file */
+	public static final String CONFIG_PROPERTY = "common.logger.config";
+	
+	static final String LINE_SEPARATOR = System.lineSeparator();
+	
+	/** Format for printing the current date and time, shared by all loggers */
+	static final TimestampFormat timestampFormat = new TimestampFormat();
+	
 	/**
 	 * Global flag to switch debug on/off
 	 */
 	private static boolean gDebug = false;
 	
-	/** Format for printing the current date and time */
-	private DateFormat dateFormat;
+	/** The sinks where messages are written */
+	private static final List<LogSink> sinks = new CopyOnWriteArrayList<LogSink>();
+	
+	/** The sink writing to all sinks, used by the asynchronous writer */
+	private static final LogSink allSinks = new AllSinks();
+	
+	/** The logging configuration, or null if not configured */
+	private static volatile LogConfig config = null;
+	
+	/** The asynchronous writer, or null to log synchronously */
+	private static volatile AsyncLogWriter asyncWriter = null;
+	
+	static {
+		sinks.add(WriterLogSink.console(false));
+		String sConfigFile = System.getProperty(CONFIG_PROPERTY);
+		if (sConfigFile != null) {
+			try {
+				configure(LogConfig.load(sConfigFile));
+			} catch (IOException exc) {
+				System.err.println("Failed to load logging configuration " + sConfigFile + ": " + exc.getMessage());
+			} catch (IllegalArgumentException exc) {
+				System.err.println("Invalid logging configuration " + sConfigFile + ": " + exc.getMessage());
+			}
+		}
+	}
 	
 	/** The name of the class writing logs */
 	private String unitName;
@@ -28,6 +75,9 @@ public class Logger {
 	 * Local flag to switch debug on/off
 	 */
 	private boolean isDebug;
+	
+	/** The level configured for this unit, resolved from the current configuration */
+	private volatile UnitLevel unitLevel;
 
 	/**
 	 * Constructor with debug set to false.
@@ -47,18 +97,123 @@ public class Logger {
 	public Logger(String unitName, boolean isDebug) {
 		this.unitName = unitName;
 		this.isDebug = isDebug;
-		this.dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss");
-		info("Created logger with debug=" + this.isDebug);
+		this.unitLevel = new UnitLevel(config, unitName);
+		debug("Created logger with debug={}", Boolean.valueOf(this.isDebug));
 	}
 	
 	/**
 	 * Set the global flag telling if debug messages are logged.
+	 * Ignored for units with a configured level.
 	 * @param isDebug if true, will print debug messages.
 	 */
 	public static void setGlobalDebug(boolean isDebug) {
 		Logger.gDebug = isDebug;
 	}
 	
+	/**
+	 * Applies a logging configuration: sets the unit levels,
+	 * replaces the sinks and starts or stops asynchronous logging.
+	 * 
+	 * @param newConfig the logging configuration
+	 * @throws IOException if a sink can not be created
+	 */
+	public static synchronized void configure(LogConfig newConfig) throws IOException {
+		List<LogSink> listSinks = newConfig.createSinks();
+		stopAsync();
+		setSinks(listSinks);
+		config = newConfig;
+		if (newConfig.isAsync()) {
+			startAsync(newConfig.getAsyncCapacity(), newConfig.getAsyncPolicy());
+		}
+	}
+	
+	/**
+	 * Replaces the sinks where messages are written.
+	 * The previous sinks are closed.
+	 * 
+	 * @param listSinks the new sinks
+	 */
+	public static synchronized void setSinks(List<LogSink> listSinks) {
+		flush();
+		List<LogSink> listPrevious = new ArrayList<LogSink>(sinks);
+		sinks.clear();
+		sinks.addAll(listSinks);
+		for (LogSink sink : listPrevious) {
+			if (!listSinks.contains(sink)) {
+				try {
+					sink.close();
+				} catch (IOException exc) {
+					System.err.println("Failed to close log sink: " + exc.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds a sink where messages are written.
+	 * @param sink the sink to add
+	 */
+	public static void addSink(LogSink sink) {
+		sinks.add(sink);
+	}
+	
+	/**
+	 * Removes a sink where messages are written. The sink is not closed.
+	 * @param sink the sink to remove
+	 */
+	public static void removeSink(LogSink sink) {
+		flush();
+		sinks.remove(sink);
+	}
+	
+	/**
+	 * Starts writing log messages to the sinks in a background thread,
+	 * with a buffer of 8192 messages and the blocking overflow policy.
+	 */
+	public static void startAsync() {
+		startAsync(8192, AsyncLogWriter.OverflowPolicy.BLOCK);
+	}
+	
+	/**
+	 * Starts writing log messages to the sinks in a background thread.
+	 * Messages are written in batches, which is much faster than writing
+	 * each message on the logging thread.
+	 * Replaces the previous asynchronous writer, if any.
+	 * 
+	 * @param capacity	the number of messages in the buffer
+	 * @param policy	what to do with messages logged when the buffer is full
+	 */
+	public static synchronized void startAsync(int capacity, AsyncLogWriter.OverflowPolicy policy) {
+		AsyncLogWriter previous = asyncWriter;
+		asyncWriter = new AsyncLogWriter(allSinks, capacity, policy);
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * Writes the pending log messages and goes back to synchronous logging.
+	 * No effect if asynchronous logging is not started.
+	 */
+	public static synchronized void stopAsync() {
+		AsyncLogWriter previous = asyncWriter;
+		asyncWriter = null;
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * Waits until the pending log messages are written.
+	 * No effect if asynchronous logging is not started.
+	 */
+	public static void flush() {
+		AsyncLogWriter writer = asyncWriter;
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+	
 	/**
 	 * Set the flag telling if debug messages are logged.
 	 * @param isDebug if true, will print debug messages.
@@ -72,8 +227,79 @@ public class Logger {
 	 * @param msg the message to log
 	 */
 	public void debug(String msg) {
-		if (gDebug && isDebug)
-			System.out.printf("%s [debug] %10s: %s%n", getTimestamp(), unitName, msg);
+		if (isEnabled(LogLevel.DEBUG))
+			write(LogLevel.DEBUG, msg, null);
+	}
+	
+	/**
+	 * Tells if debug messages are logged, to skip building
+	 * expensive debug messages.
+	 * @return true if debug messages are logged
+	 */
+	public boolean isDebugEnabled() {
+		return isEnabled(LogLevel.DEBUG);
+	}
+	
+	/**
+	 * Tells if messages of the given level are logged.
+	 * @param level the message level
+	 * @return true if messages of the level are logged
+	 */
+	public boolean isEnabled(LogLevel level) {
+		UnitLevel current = unitLevel;
+		if (current.config != config) {
+			current = new UnitLevel(config, unitName);
+			unitLevel = current;
+		}
+		if (current.level != null) {
+			return level.compareTo(current.level) >= 0;
+		}
+		return level != LogLevel.DEBUG || (gDebug && isDebug);
+	}
+	
+	/**
+	 * Log a debug message built only if debug messages are logged.
+	 * @param msgSupplier the supplier of the message to log
+	 */
+	public void debug(Supplier<String> msgSupplier) {
+		if (isEnabled(LogLevel.DEBUG))
+			write(LogLevel.DEBUG, msgSupplier.get(), null);
+	}
+	
+	/**
+	 * Log a debug message from a template, where {} is replaced by the argument.
+	 * The message is only built if debug messages are logged.
+	 * @param template the message template
+	 * @param arg the argument
+	 */
+	public void debug(String template, Object arg) {
+		if (isEnabled(LogLevel.DEBUG))
+			write(LogLevel.DEBUG, format(template, arg), null);
+	}
+	
+	/**
+	 * Log a debug message from a template, where each {} is replaced
+	 * by the next argument.
+	 * The message is only built if debug messages are logged.
+	 * @param template the message template
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 */
+	public void debug(String template, Object arg1, Object arg2) {
+		if (isEnabled(LogLevel.DEBUG))
+			write(LogLevel.DEBUG, format(template, arg1, arg2), null);
+	}
+	
+	/**
+	 * Log a debug message from a template, where each {} is replaced
+	 * by the next argument.
+	 * The message is only built if debug messages are logged.
+	 * @param template the message template
+	 * @param args the arguments
+	 */
+	public void debug(String template, Object... args) {
+		if (isEnabled(LogLevel.DEBUG))
+			write(LogLevel.DEBUG, format(template, args), null);
 	}
 	
 	/**
@@ -81,7 +307,8 @@ public class Logger {
 	 * @param msg the message to log
 	 */
 	public void info(String msg) {
-		System.out.printf("%s  [info] %10s: %s%n", getTimestamp(), unitName, msg);
+		if (isEnabled(LogLevel.INFO))
+			write(LogLevel.INFO, msg, null);
 	}
 	
 	/**
@@ -89,7 +316,8 @@ public class Logger {
 	 * @param msg the message to log
 	 */
 	public void warn(String msg) {
-		System.out.printf("%s  [WARN] %10s: %s%n", getTimestamp(), unitName, msg);
+		if (isEnabled(LogLevel.WARN))
+			write(LogLevel.WARN, msg, null);
 	}
 	
 	/**
@@ -107,14 +335,94 @@ public class Logger {
 	 * @param msg the message to log
 	 */
 	public void error(String msg) {
-		System.out.printf("%s [ERROR] %10s: %s%n", getTimestamp(), unitName, msg);
+		if (isEnabled(LogLevel.ERROR))
+			write(LogLevel.ERROR, msg, null);
 	}
 	
 	/**
-	 * Get the current date and time.
+	 * Log a message with key/value fields, written as JSON fields
+	 * or appended to the message in text format.
+	 * @param level the message level
+	 * @param msg the message to log
+	 * @param fields the keys and values of the fields, alternating
 	 */
-	private String getTimestamp() {
-		return dateFormat.format(new Date());
+	public void log(LogLevel level, String msg, Object... fields) {
+		if (isEnabled(level))
+			write(level, msg, fields);
+	}
+	
+	/**
+	 * Write a message to the sinks, or to the asynchronous writer.
+	 */
+	private void write(LogLevel level, String msg, Object[] fields) {
+		LogRecord rec = new LogRecord(System.currentTimeMillis(), level, unitName, msg, fields);
+		AsyncLogWriter writer = asyncWriter;
+		if (writer == null || !writer.log(rec)) {
+			for (LogSink sink : sinks) {
+				try {
+					sink.write(rec);
+					sink.flush();
+				} catch (IOException exc) {
+					System.err.println("Failed to write log message: " + exc.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Replaces each {} in a message template by the next argument.
+	 * Placeholders without argument are kept, extra arguments are ignored.
+	 */
+	static String format(String template, Object... args) {
+		StringBuilder sb = new StringBuilder(template.length() + 16*args.length);
+		int iStart = 0;
+		for (Object arg : args) {
+			int iArg = template.indexOf("{}", iStart);
+			if (iArg < 0) {
+				break;
+			}
+			sb.append(template, iStart, iArg).append(arg);
+			iStart = iArg + 2;
+		}
+		sb.append(template, iStart, template.length());
+		return sb.toString();
+	}
+	
+	/**
+	 * The level of a unit in a configuration.
+	 */
+	private static class UnitLevel {
+		final LogConfig config;
+		/** The configured level, or null if not configured */
+		final LogLevel level;
+		
+		UnitLevel(LogConfig config, String unitName) {
+			this.config = config;
+			this.level = (config == null ? null : config.getLevel(unitName));
+		}
+	}
+	
+	/**
+	 * Writes records to all sinks.
+	 */
+	private static class AllSinks implements LogSink {
+		@Override
+		public void write(LogRecord rec) throws IOException {
+			for (LogSink sink : sinks) {
+				sink.write(rec);
+			}
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			for (LogSink sink : sinks) {
+				sink.flush();
+			}
+		}
+		
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
 	}
-
 }
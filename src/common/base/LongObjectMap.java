@@ -0,0 +1,212 @@
+package common.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from primitive long keys to non-null values, without boxing the keys.
+ *
+ * <p>Entries are stored in two arrays with open addressing and linear probing,
+ * so that a lookup reads at most a few contiguous slots and allocates nothing.
+ * The arrays are doubled when more than half full; removals shift the
+ * following entries back, so no deleted markers are left.
+ *
+ * <p>The map is not synchronized.
+ *
+ * @param <V> the type of the values
+ *
+ * @author nicz
+ *
+ */
+public class LongObjectMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+
+	/** The capacity minus one, to compute slots */
+	private int mask;
+
+	private int nSize;
+
+	/**
+	 * Constructor, for an empty map.
+	 */
+	public LongObjectMap() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * Constructor, for an empty map.
+	 *
+	 * @param nExpected the expected number of entries
+	 */
+	public LongObjectMap(int nExpected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2*nExpected) {
+			capacity *= 2;
+		}
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		nSize = 0;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return nSize;
+	}
+
+	/**
+	 * @return true if the map has no entry
+	 */
+	public boolean isEmpty() {
+		return nSize == 0;
+	}
+
+	/**
+	 * Gets the value of a key.
+	 *
+	 * @param key the key
+	 * @return the value, or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int slot = getSlot(key);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				return (V) values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @param key the key
+	 * @return true if the key is in the map
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Sets the value of a key.
+	 *
+	 * @param key the key
+	 * @param value the value, not null
+	 * @return the previous value, or null if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null value for key " + key);
+		}
+		int slot = getSlot(key);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		++nSize;
+		if (2*nSize > keys.length) {
+			resize(2*keys.length);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a key.
+	 *
+	 * @param key the key
+	 * @return the removed value, or null if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int slot = getSlot(key);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				shiftBack(slot);
+				--nSize;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all entries, keeping the capacity.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		nSize = 0;
+	}
+
+	/**
+	 * @return a new list of the values, in no particular order
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> listValues = new ArrayList<V>(nSize);
+		for (int i=0; i<values.length; ++i) {
+			if (values[i] != null) {
+				listValues.add((V) values[i]);
+			}
+		}
+		return listValues;
+	}
+
+	/**
+	 * Fills the slot of a removed entry with the following entries
+	 * which would not be found any more.
+	 */
+	private void shiftBack(int slot) {
+		int free = slot;
+		int next = (free + 1) & mask;
+		while (values[next] != null) {
+			int home = getSlot(keys[next]);
+			// Move the entry if its home slot is not between the free slot and itself
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[free] = null;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		for (int i=0; i<oldKeys.length; ++i) {
+			if (oldValues[i] != null) {
+				int slot = getSlot(oldKeys[i]);
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private int getSlot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
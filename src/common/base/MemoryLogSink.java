@@ -0,0 +1,93 @@
+package common.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A log sink keeping the last formatted records in memory,
+ * for example to show recent messages in a diagnostics view.
+ *
+ * @author nicz
+ *
+ */
+public class MemoryLogSink implements LogSink {
+
+	/** The ring of formatted records */
+	private final String[] lines;
+
+	/** True to keep JSON lines, false to keep text lines */
+	private final boolean isJson;
+
+	/** Buffer to format records */
+	private final StringBuilder sb;
+
+	/** The index of the next line to set */
+	private int iNext;
+
+	/** The number of lines kept */
+	private int nLines;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity	the maximum number of records kept
+	 * @param isJson	true to keep JSON lines, false to keep text lines
+	 */
+	public MemoryLogSink(int capacity, boolean isJson) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid log memory capacity: " + capacity);
+		}
+		this.lines = new String[capacity];
+		this.isJson = isJson;
+		this.sb = new StringBuilder(256);
+		this.iNext = 0;
+		this.nLines = 0;
+	}
+
+	@Override
+	public synchronized void write(LogRecord rec) {
+		sb.setLength(0);
+		if (isJson) {
+			rec.appendJson(sb);
+		} else {
+			rec.appendText(sb);
+		}
+		sb.setLength(sb.length() - Logger.LINE_SEPARATOR.length());
+		lines[iNext] = sb.toString();
+		iNext = (iNext + 1) % lines.length;
+		if (nLines < lines.length) {
+			++nLines;
+		}
+	}
+
+	/**
+	 * @return the kept lines, without line separator, from the oldest to the newest.
+	 */
+	public synchronized List<String> getLines() {
+		List<String> listLines = new ArrayList<String>(nLines);
+		int iFirst = (iNext - nLines + lines.length) % lines.length;
+		for (int i=0; i<nLines; ++i) {
+			listLines.add(lines[(iFirst + i) % lines.length]);
+		}
+		return listLines;
+	}
+
+	/**
+	 * Removes all kept lines.
+	 */
+	public synchronized void clear() {
+		for (int i=0; i<lines.length; ++i) {
+			lines[i] = null;
+		}
+		iNext = 0;
+		nLines = 0;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
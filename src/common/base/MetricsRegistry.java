@@ -0,0 +1,128 @@
+package common.base;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A registry of named metrics, to follow how the application behaves
+ * over a long run:
+ * <ul>
+ * <li>counters, like the number of generated pages or icon cache hits,
+ * incremented by many threads without contention;</li>
+ * <li>timers, recording durations in a {@link LatencyHistogram},
+ * for example with {@link Chronometer#stop(LatencyHistogram)};</li>
+ * <li>gauges, reading a current value like a cache size.</li>
+ * </ul>
+ *
+ * <p>Metrics are created on first use, so callers may keep the returned
+ * counter or timer, or get it by name each time. Use {@link #snapshot()}
+ * to read all metrics, or a {@link MetricsReporter} to report them periodically.
+ *
+ * @author nicz
+ *
+ */
+public class MetricsRegistry {
+
+	/** The registry used by the application classes */
+	private static final MetricsRegistry defaultRegistry = new MetricsRegistry();
+
+	private final ConcurrentMap<String, LongAdder> mapCounters;
+	private final ConcurrentMap<String, LatencyHistogram> mapTimers;
+	private final ConcurrentMap<String, LongSupplier> mapGauges;
+
+	/**
+	 * Constructor.
+	 */
+	public MetricsRegistry() {
+		mapCounters = new ConcurrentHashMap<String, LongAdder>();
+		mapTimers = new ConcurrentHashMap<String, LatencyHistogram>();
+		mapGauges = new ConcurrentHashMap<String, LongSupplier>();
+	}
+
+	/**
+	 * @return the registry used by the application classes.
+	 */
+	public static MetricsRegistry getDefault() {
+		return defaultRegistry;
+	}
+
+	/**
+	 * Gets a counter, creating it if needed.
+	 *
+	 * @param name the counter name, like 'icons.hits'
+	 * @return the counter
+	 */
+	public LongAdder counter(String name) {
+		LongAdder counter = mapCounters.get(name);
+		if (counter == null) {
+			LongAdder created = new LongAdder();
+			counter = mapCounters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Gets a timer, creating it if needed.
+	 *
+	 * @param name the timer name, like 'site.page'
+	 * @return the histogram of recorded durations
+	 */
+	public LatencyHistogram timer(String name) {
+		LatencyHistogram timer = mapTimers.get(name);
+		if (timer == null) {
+			LatencyHistogram created = new LatencyHistogram();
+			timer = mapTimers.putIfAbsent(name, created);
+			if (timer == null) {
+				timer = created;
+			}
+		}
+		return timer;
+	}
+
+	/**
+	 * Sets a gauge, replacing any gauge with the same name.
+	 * The gauge is read when a snapshot is taken, possibly by another thread.
+	 *
+	 * @param name the gauge name, like 'icons.size'
+	 * @param gauge the supplier of the current value
+	 */
+	public void gauge(String name, LongSupplier gauge) {
+		mapGauges.put(name, gauge);
+	}
+
+	/**
+	 * Removes the counter, timer and gauge with the given name.
+	 *
+	 * @param name the metric name
+	 */
+	public void remove(String name) {
+		mapCounters.remove(name);
+		mapTimers.remove(name);
+		mapGauges.remove(name);
+	}
+
+	/**
+	 * Reads the current values of all metrics.
+	 *
+	 * @return the snapshot of the metrics
+	 */
+	public MetricsSnapshot snapshot() {
+		MetricsSnapshot snapshot = new MetricsSnapshot(System.currentTimeMillis());
+		for (Map.Entry<String, LongAdder> entry : mapCounters.entrySet()) {
+			snapshot.setCounter(entry.getKey(), entry.getValue().sum());
+		}
+		for (Map.Entry<String, LatencyHistogram> entry : mapTimers.entrySet()) {
+			snapshot.setTimer(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, LongSupplier> entry : mapGauges.entrySet()) {
+			snapshot.setGauge(entry.getKey(), entry.getValue().getAsLong());
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,245 @@
+package common.base;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically reports the metrics of a {@link MetricsRegistry}
+ * to the log, as structured messages, and optionally to a CSV file.
+ *
+ * <p>Each report contains, for each counter and timer, the count
+ * and the rate per second since the previous report; for each timer,
+ * the mean and percentiles of all recorded durations in milliseconds;
+ * and the value of each gauge. Values are logged as numbers, and the rate
+ * is left out of the first report.
+ * A report failing with a runtime exception is logged, and does not stop
+ * the periodic reports.
+ *
+ * <p>The CSV file has one row per metric and report, with the columns
+ * time, name, type, count, rate, value, mean, p50, p90, p99, max.
+ *
+ * @author nicz
+ *
+ */
+public class MetricsReporter {
+
+	private static final Logger log = new Logger("Metrics");
+
+	private static final String CSV_HEADER = "time,name,type,count,rate,value,mean_ms,p50_ms,p90_ms,p99_ms,max_ms";
+
+	private final MetricsRegistry registry;
+
+	/** The CSV file, or null to only report to the log */
+	private File csvFile;
+
+	/** The previous snapshot, to compute rates */
+	private MetricsSnapshot previous;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry the registry whose metrics are reported
+	 */
+	public MetricsReporter(MetricsRegistry registry) {
+		this.registry = registry;
+		this.csvFile = null;
+		this.previous = null;
+		this.scheduler = null;
+	}
+
+	/**
+	 * Sets the CSV file where reports are appended.
+	 *
+	 * @param sFilename the path of the CSV file, or null to only report to the log
+	 */
+	public synchronized void setCsvFile(String sFilename) {
+		this.csvFile = (sFilename == null ? null : new File(sFilename));
+	}
+
+	/**
+	 * Starts reporting periodically in a background thread.
+	 * Replaces the previous schedule, if any.
+	 *
+	 * @param period the time between reports
+	 * @param unit the unit of the period
+	 */
+	public synchronized void start(long period, TimeUnit unit) {
+		stop();
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "MetricsReporter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					report();
+				} catch (RuntimeException exc) {
+					// Else the executor silently cancels the next reports
+					log.error("Failed to report metrics", exc);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stops reporting periodically. No effect if not started.
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Reports the current metrics now.
+	 *
+	 * @return the reported snapshot
+	 */
+	public synchronized MetricsSnapshot report() {
+		MetricsSnapshot snapshot = registry.snapshot();
+		double seconds = (previous == null ? 0 : (snapshot.getTime() - previous.getTime()) / 1000.0);
+
+		for (Map.Entry<String, Long> entry : snapshot.getCounters().entrySet()) {
+			long count = entry.getValue().longValue();
+			logMetric("counter", entry.getKey(), count,
+					getRate(count, previous == null ? null : previous.getCounters().get(entry.getKey()), seconds));
+		}
+		for (Map.Entry<String, MetricsSnapshot.TimerValues> entry : snapshot.getTimers().entrySet()) {
+			MetricsSnapshot.TimerValues timer = entry.getValue();
+			MetricsSnapshot.TimerValues previousTimer = (previous == null ? null : previous.getTimers().get(entry.getKey()));
+			logMetric("timer", entry.getKey(), timer.getCount(),
+					getRate(timer.getCount(), previousTimer == null ? null : Long.valueOf(previousTimer.getCount()), seconds),
+					"mean_ms", toMillis(timer.getMean()), "p50_ms", toMillis(timer.getP50()),
+					"p90_ms", toMillis(timer.getP90()), "p99_ms", toMillis(timer.getP99()),
+					"max_ms", toMillis(timer.getMax()));
+		}
+		for (Map.Entry<String, Long> entry : snapshot.getGauges().entrySet()) {
+			log.log(LogLevel.INFO, "gauge", "name", entry.getKey(), "value", entry.getValue());
+		}
+
+		if (csvFile != null) {
+			try {
+				writeCsv(snapshot, seconds);
+			} catch (IOException exc) {
+				log.error("Failed to write metrics to " + csvFile.getPath(), exc);
+			}
+		}
+		previous = snapshot;
+		return snapshot;
+	}
+
+	/**
+	 * Logs a counter or timer, with its rate after its count if known.
+	 */
+	private void logMetric(String msg, String name, long count, Double rate, Object... values) {
+		Object[] fields = new Object[(rate == null ? 4 : 6) + values.length];
+		int nFields = 0;
+		fields[nFields++] = "name";
+		fields[nFields++] = name;
+		fields[nFields++] = "count";
+		fields[nFields++] = Long.valueOf(count);
+		if (rate != null) {
+			fields[nFields++] = "rate";
+			fields[nFields++] = rate;
+		}
+		System.arraycopy(values, 0, fields, nFields, values.length);
+		log.log(LogLevel.INFO, msg, fields);
+	}
+
+	/**
+	 * Appends the snapshot to the CSV file, with a header if the file is new.
+	 */
+	private void writeCsv(MetricsSnapshot snapshot, double seconds) throws IOException {
+		boolean isNew = !csvFile.exists() || csvFile.length() == 0;
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(csvFile, true), StandardCharsets.UTF_8));
+		try {
+			if (isNew) {
+				writer.write(CSV_HEADER);
+				writer.write('\n');
+			}
+			String sTime = Logger.timestampFormat.format(snapshot.getTime());
+			for (Map.Entry<String, Long> entry : snapshot.getCounters().entrySet()) {
+				long count = entry.getValue().longValue();
+				writeRow(writer, sTime, entry.getKey(), "counter", String.valueOf(count),
+						formatRate(getRate(count, previous == null ? null : previous.getCounters().get(entry.getKey()), seconds)),
+						"", "", "", "", "", "");
+			}
+			for (Map.Entry<String, MetricsSnapshot.TimerValues> entry : snapshot.getTimers().entrySet()) {
+				MetricsSnapshot.TimerValues timer = entry.getValue();
+				MetricsSnapshot.TimerValues previousTimer = (previous == null ? null : previous.getTimers().get(entry.getKey()));
+				writeRow(writer, sTime, entry.getKey(), "timer", String.valueOf(timer.getCount()),
+						formatRate(getRate(timer.getCount(), previousTimer == null ? null : Long.valueOf(previousTimer.getCount()), seconds)),
+						"", formatMillis(timer.getMean()), formatMillis(timer.getP50()), formatMillis(timer.getP90()),
+						formatMillis(timer.getP99()), formatMillis(timer.getMax()));
+			}
+			for (Map.Entry<String, Long> entry : snapshot.getGauges().entrySet()) {
+				writeRow(writer, sTime, entry.getKey(), "gauge", "", "", String.valueOf(entry.getValue()),
+						"", "", "", "", "");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void writeRow(Writer writer, String... values) throws IOException {
+		for (int i=0; i<values.length; ++i) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			String sValue = values[i];
+			if (sValue.indexOf(',') >= 0 || sValue.indexOf('"') >= 0) {
+				writer.write('"');
+				writer.write(sValue.replace("\"", "\"\""));
+				writer.write('"');
+			} else {
+				writer.write(sValue);
+			}
+		}
+		writer.write('\n');
+	}
+
+	/**
+	 * @return the rate per second since the previous count, rounded to 2 decimals, or null if unknown.
+	 */
+	private static Double getRate(long count, Long previousCount, double seconds) {
+		if (previousCount == null || seconds <= 0) {
+			return null;
+		}
+		return Double.valueOf(Math.round((count - previousCount.longValue()) * 100 / seconds) / 100.0);
+	}
+
+	/**
+	 * @return the duration in milliseconds, rounded to 3 decimals.
+	 */
+	private static Double toMillis(double nanos) {
+		return Double.valueOf(Math.round(nanos / 1e3) / 1e3);
+	}
+
+	private static String formatRate(Double rate) {
+		return (rate == null ? "" : String.format(Locale.ROOT, "%.2f", rate));
+	}
+
+	private static String formatMillis(double nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,114 @@
+package common.base;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The values of all metrics of a {@link MetricsRegistry} at a given time,
+ * sorted by name.
+ *
+ * @author nicz
+ *
+ */
+public class MetricsSnapshot {
+
+	private final long time;
+	private final Map<String, Long> mapCounters;
+	private final Map<String, Long> mapGauges;
+	private final Map<String, TimerValues> mapTimers;
+
+	/**
+	 * Constructor of an empty snapshot, filled by the registry.
+	 *
+	 * @param time the time of the snapshot, in milliseconds since the epoch
+	 */
+	MetricsSnapshot(long time) {
+		this.time = time;
+		this.mapCounters = new TreeMap<String, Long>();
+		this.mapGauges = new TreeMap<String, Long>();
+		this.mapTimers = new TreeMap<String, TimerValues>();
+	}
+
+	void setCounter(String name, long value) {
+		mapCounters.put(name, Long.valueOf(value));
+	}
+
+	void setGauge(String name, long value) {
+		mapGauges.put(name, Long.valueOf(value));
+	}
+
+	void setTimer(String name, LatencyHistogram histogram) {
+		mapTimers.put(name, new TimerValues(histogram));
+	}
+
+	/**
+	 * @return the time of the snapshot, in milliseconds since the epoch.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the counter values, by name.
+	 */
+	public Map<String, Long> getCounters() {
+		return Collections.unmodifiableMap(mapCounters);
+	}
+
+	/**
+	 * @return the gauge values, by name.
+	 */
+	public Map<String, Long> getGauges() {
+		return Collections.unmodifiableMap(mapGauges);
+	}
+
+	/**
+	 * @return the timer values, by name.
+	 */
+	public Map<String, TimerValues> getTimers() {
+		return Collections.unmodifiableMap(mapTimers);
+	}
+
+	/**
+	 * The statistics of the durations recorded by a timer, in nanoseconds.
+	 */
+	public static class TimerValues {
+		private final long count;
+		private final double mean;
+		private final long p50, p90, p99, max;
+
+		TimerValues(LatencyHistogram histogram) {
+			count = histogram.getCount();
+			mean = histogram.getMean();
+			p50 = histogram.getPercentile(50);
+			p90 = histogram.getPercentile(90);
+			p99 = histogram.getPercentile(99);
+			max = histogram.getMax();
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		public long getP50() {
+			return p50;
+		}
+
+		public long getP90() {
+			return p90;
+		}
+
+		public long getP99() {
+			return p99;
+		}
+
+		public long getMax() {
+			return max;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package common.base;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A log sink writing text or JSON lines to a file in UTF-8,
+ * rolled over when it gets too large or too old.
+ *
+ * <p>On roll over, the file 'app.log' is renamed to 'app.log.1',
+ * the previous 'app.log.1' to 'app.log.2', and so on.
+ * The oldest file beyond the maximum number of kept files is deleted.
+ *
+ * <p>The size of the file is counted in UTF-8 bytes. The age of the file
+ * is counted from its creation time, if the file system records it,
+ * else from its last modification time when it is opened.
+ *
+ * @author nicz
+ *
+ */
+public class RollingFileLogSink implements LogSink {
+
+	private final File file;
+
+	/** The size from which the file is rolled over, in bytes, or 0 for no limit */
+	private final long maxSize;
+
+	/** The age from which the file is rolled over, in milliseconds, or 0 for no limit */
+	private final long maxAge;
+
+	/** The number of rolled over files kept */
+	private final int nKeptFiles;
+
+	/** True to write JSON lines, false to write text lines */
+	private final boolean isJson;
+
+	/** Buffer to format records */
+	private final StringBuilder sb;
+
+	private Writer out;
+
+	/** The number of bytes in the file */
+	private long size;
+
+	/** The time the file was created, in milliseconds since the epoch */
+	private long tCreated;
+
+	/**
+	 * Constructor. Opens the file, appending to it if it exists.
+	 *
+	 * @param sFilename		the path of the log file
+	 * @param maxSize		the size from which the file is rolled over, in bytes, or 0 for no limit
+	 * @param maxAge		the age from which the file is rolled over, in milliseconds, or 0 for no limit
+	 * @param nKeptFiles	the number of rolled over files kept
+	 * @param isJson		true to write JSON lines, false to write text lines
+	 * @throws IOException	if the file can not be opened
+	 */
+	public RollingFileLogSink(String sFilename, long maxSize, long maxAge, int nKeptFiles, boolean isJson)
+			throws IOException {
+		this.file = new File(sFilename);
+		this.maxSize = maxSize;
+		this.maxAge = maxAge;
+		this.nKeptFiles = nKeptFiles;
+		this.isJson = isJson;
+		this.sb = new StringBuilder(256);
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Could not create log directory " + dir.getPath());
+		}
+		open();
+	}
+
+	@Override
+	public synchronized void write(LogRecord rec) throws IOException {
+		sb.setLength(0);
+		if (isJson) {
+			rec.appendJson(sb);
+		} else {
+			rec.appendText(sb);
+		}
+		int nBytes = getEncodedLength(sb);
+		if (out == null) {
+			// The file could not be opened again after the last roll over
+			open();
+		}
+		if (size > 0 && ((maxSize > 0 && size + nBytes > maxSize)
+				|| (maxAge > 0 && rec.getTime() - tCreated >= maxAge))) {
+			rollOver();
+		}
+		out.append(sb);
+		size += nBytes;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	private void open() throws IOException {
+		if (file.exists()) {
+			size = file.length();
+			tCreated = Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toMillis();
+		} else {
+			size = 0;
+			tCreated = System.currentTimeMillis();
+		}
+		out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file, true), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Counts the bytes of a text encoded in UTF-8, like the writer encodes it.
+	 */
+	private static int getEncodedLength(CharSequence text) {
+		int nBytes = 0;
+		int nChars = text.length();
+		for (int i=0; i<nChars; ++i) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				++nBytes;
+			} else if (c < 0x800) {
+				nBytes += 2;
+			} else if (Character.isHighSurrogate(c) && i+1 < nChars && Character.isLowSurrogate(text.charAt(i+1))) {
+				nBytes += 4;
+				++i;
+			} else {
+				// Unpaired surrogates are encoded as '?'
+				nBytes += (Character.isSurrogate(c) ? 1 : 3);
+			}
+		}
+		return nBytes;
+	}
+
+	/**
+	 * Renames the current file and the kept files, and opens a new file.
+	 */
+	private void rollOver() throws IOException {
+		Writer closed = out;
+		out = null;
+		try {
+			closed.close();
+			String sPath = file.getPath();
+			File oldest = new File(sPath + "." + nKeptFiles);
+			if (oldest.exists() && !oldest.delete()) {
+				throw new IOException("Could not delete old log file " + oldest.getPath());
+			}
+			for (int i=nKeptFiles-1; i>=1; --i) {
+				File kept = new File(sPath + "." + i);
+				if (kept.exists() && !kept.renameTo(new File(sPath + "." + (i+1)))) {
+					throw new IOException("Could not rename old log file " + kept.getPath());
+				}
+			}
+			if (nKeptFiles > 0) {
+				if (!file.renameTo(new File(sPath + ".1"))) {
+					throw new IOException("Could not rename log file " + sPath);
+				}
+			} else if (!file.delete()) {
+				throw new IOException("Could not delete log file " + sPath);
+			}
+		} finally {
+			// Keep writing to the current file if it could not be rolled over,
+			// or open it again on the next record if it can not be opened now
+			open();
+		}
+	}
+}
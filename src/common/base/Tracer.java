@@ -0,0 +1,376 @@
+package common.base;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Traces nested operations as spans, to break down where time goes,
+ * for example in building, rendering and writing pages.
+ *
+ * <p>Usage:
+ * <pre>
+ * Tracer.Span span = Tracer.span("page.save");
+ * try {
+ *     ...
+ * } finally {
+ *     span.close();
+ * }
+ * </pre>
+ * Spans may also be used in try-with-resources statements.
+ * Spans must be closed in the reverse order of opening, on the thread
+ * that opened them, and only once: a closed span is reused by the next
+ * span opened at the same depth.
+ *
+ * <p>The time of each span is measured with a {@link Chronometer} and
+ * added to the node of its stack of span names, like 'site.page;page.save'.
+ * The time of a span minus the time of its child spans is its self time.
+ * Spans and stack nodes are reused, so opening and closing a span
+ * does not allocate once each stack has been seen.
+ * Tracing is disabled by default; disabled spans do nothing.
+ *
+ * <p>At the end of a run, {@link #writeCollapsed(String)} writes
+ * the self times in the collapsed stack format read by flame graph tools,
+ * and {@link #getTotals()} gives the total and self times per span name.
+ * These must be called when no span is open, since spans are
+ * recorded by each thread without synchronization.
+ * The trace of a thread is kept after the thread ends, until the next
+ * {@link #reset()}; a pooled thread which stops tracing may remove its
+ * trace with {@link #removeThreadTrace()}.
+ *
+ * @author nicz
+ *
+ */
+public class Tracer {
+
+	private static final Logger log = new Logger("Tracer");
+
+	/** The span doing nothing, returned when tracing is disabled */
+	private static final Span DISABLED = new Span(null);
+
+	private static volatile boolean isEnabled = false;
+
+	/** Incremented on reset, so that each thread clears its own trace */
+	private static volatile int generation = 0;
+
+	/** The traces of all threads which opened spans, since the last reset for ended threads */
+	private static final List<ThreadTrace> listTraces = new CopyOnWriteArrayList<ThreadTrace>();
+
+	private static final ThreadLocal<ThreadTrace> threadTrace = new ThreadLocal<ThreadTrace>() {
+		@Override
+		protected ThreadTrace initialValue() {
+			ThreadTrace trace = new ThreadTrace();
+			listTraces.add(trace);
+			return trace;
+		}
+	};
+
+	/**
+	 * Private constructor, only static methods.
+	 */
+	private Tracer() {
+	}
+
+	/**
+	 * Enables or disables tracing. Spans open when tracing is disabled
+	 * are still recorded.
+	 *
+	 * @param isEnabled true to record spans
+	 */
+	public static void setEnabled(boolean isEnabled) {
+		Tracer.isEnabled = isEnabled;
+	}
+
+	/**
+	 * @return true if spans are recorded.
+	 */
+	public static boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * Opens a span, which must be closed by the same thread.
+	 *
+	 * @param name the span name, like 'page.save'
+	 * @return the opened span, or a span doing nothing if tracing is disabled
+	 */
+	public static Span span(String name) {
+		if (!isEnabled) {
+			return DISABLED;
+		}
+		return threadTrace.get().open(name);
+	}
+
+	/**
+	 * Removes all recorded times. Each thread clears its times
+	 * when it next opens a span outside any other span.
+	 * The traces of ended threads are removed.
+	 */
+	public static void reset() {
+		++generation;
+		List<ThreadTrace> listEnded = new ArrayList<ThreadTrace>();
+		for (ThreadTrace trace : listTraces) {
+			Thread thread = trace.thread.get();
+			if (thread == null || !thread.isAlive()) {
+				listEnded.add(trace);
+			}
+		}
+		listTraces.removeAll(listEnded);
+	}
+
+	/**
+	 * Removes the trace of the current thread, with its recorded times,
+	 * for example before a pooled thread is returned to its pool.
+	 * Must be called when the thread has no open span.
+	 */
+	public static void removeThreadTrace() {
+		listTraces.remove(threadTrace.get());
+		threadTrace.remove();
+	}
+
+	/**
+	 * Writes the self times of all span stacks in the collapsed stack format,
+	 * one line per stack like 'site.page;page.save;page.write 1234',
+	 * with the time in microseconds.
+	 *
+	 * @param sFilename the path of the file to write
+	 * @throws IOException if the file can not be written
+	 */
+	public static void writeCollapsed(String sFilename) throws IOException {
+		Map<String, Long> mapStacks = new TreeMap<String, Long>();
+		for (ThreadTrace trace : listTraces) {
+			if (trace.generation == generation) {
+				collectStacks(trace.root, null, mapStacks);
+			}
+		}
+		log.info("Writing " + mapStacks.size() + " span stacks to " + sFilename);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(sFilename), StandardCharsets.UTF_8));
+		try {
+			for (Map.Entry<String, Long> entry : mapStacks.entrySet()) {
+				writer.write(entry.getKey());
+				writer.write(' ');
+				writer.write(String.valueOf(entry.getValue().longValue() / 1000L));
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Gets the times of all spans, by name.
+	 * The total time of a span inside a span with the same name is not
+	 * counted twice.
+	 *
+	 * @return the count, total and self times in nanoseconds, by span name
+	 */
+	public static Map<String, SpanTotals> getTotals() {
+		Map<String, SpanTotals> mapTotals = new TreeMap<String, SpanTotals>();
+		for (ThreadTrace trace : listTraces) {
+			if (trace.generation == generation) {
+				collectTotals(trace.root, new ArrayList<String>(), mapTotals);
+			}
+		}
+		return mapTotals;
+	}
+
+	/**
+	 * Logs the count, total and self times of all spans.
+	 */
+	public static void logTotals() {
+		for (Map.Entry<String, SpanTotals> entry : getTotals().entrySet()) {
+			SpanTotals totals = entry.getValue();
+			log.log(LogLevel.INFO, "span", "name", entry.getKey(), "count", totals.getCount(),
+					"total_ms", totals.getTotalNanos() / 1000000L, "self_ms", totals.getSelfNanos() / 1000000L);
+		}
+	}
+
+	private static void collectStacks(Node node, String sParentStack, Map<String, Long> mapStacks) {
+		for (int i=0; i<node.nChildren; ++i) {
+			Node child = node.children[i];
+			String sStack = (sParentStack == null ? child.name : sParentStack + ";" + child.name);
+			if (child.selfNanos > 0) {
+				Long previous = mapStacks.get(sStack);
+				mapStacks.put(sStack, Long.valueOf(child.selfNanos + (previous == null ? 0 : previous.longValue())));
+			}
+			collectStacks(child, sStack, mapStacks);
+		}
+	}
+
+	private static void collectTotals(Node node, List<String> listAncestors, Map<String, SpanTotals> mapTotals) {
+		for (int i=0; i<node.nChildren; ++i) {
+			Node child = node.children[i];
+			SpanTotals totals = mapTotals.get(child.name);
+			if (totals == null) {
+				totals = new SpanTotals();
+				mapTotals.put(child.name, totals);
+			}
+			totals.count += child.count;
+			totals.selfNanos += child.selfNanos;
+			if (!listAncestors.contains(child.name)) {
+				totals.totalNanos += child.totalNanos;
+			}
+			listAncestors.add(child.name);
+			collectTotals(child, listAncestors, mapTotals);
+			listAncestors.remove(listAncestors.size() - 1);
+		}
+	}
+
+	/**
+	 * An operation being traced.
+	 */
+	public static class Span implements AutoCloseable {
+		private final ThreadTrace trace;
+		private final Chronometer chrono;
+		private Node node;
+		/** The time of the closed child spans, in nanoseconds */
+		private long childNanos;
+		private boolean isOpen;
+
+		Span(ThreadTrace trace) {
+			this.trace = trace;
+			this.chrono = (trace == null ? null : new Chronometer());
+			this.isOpen = false;
+		}
+
+		/**
+		 * Closes this span, and any child span left open.
+		 * No effect if tracing was disabled when opened, or if already closed
+		 * and not yet reused by another span: a span must not be closed
+		 * again once another span was opened at the same depth.
+		 */
+		@Override
+		public void close() {
+			if (isOpen) {
+				trace.close(this);
+			}
+		}
+	}
+
+	/**
+	 * The times of all spans with the same name.
+	 */
+	public static class SpanTotals {
+		private long count;
+		private long totalNanos;
+		private long selfNanos;
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getSelfNanos() {
+			return selfNanos;
+		}
+	}
+
+	/**
+	 * The times of a stack of span names.
+	 */
+	private static class Node {
+		final String name;
+		Node[] children;
+		int nChildren;
+		long count;
+		long totalNanos;
+		long selfNanos;
+
+		Node(String name) {
+			this.name = name;
+		}
+
+		Node getChild(String childName) {
+			for (int i=0; i<nChildren; ++i) {
+				Node child = children[i];
+				if (child.name == childName || child.name.equals(childName)) {
+					return child;
+				}
+			}
+			if (children == null) {
+				children = new Node[4];
+			} else if (nChildren == children.length) {
+				children = Arrays.copyOf(children, 2*nChildren);
+			}
+			Node child = new Node(childName);
+			children[nChildren++] = child;
+			return child;
+		}
+	}
+
+	/**
+	 * The spans and times of a thread.
+	 */
+	private static class ThreadTrace {
+		/** The thread, not kept alive by its trace */
+		final WeakReference<Thread> thread;
+		/** The open spans, and reusable closed spans beyond the depth */
+		Span[] stack;
+		int depth;
+		Node root;
+		int generation;
+
+		ThreadTrace() {
+			thread = new WeakReference<Thread>(Thread.currentThread());
+			stack = new Span[16];
+			depth = 0;
+			root = new Node("");
+			generation = Tracer.generation;
+		}
+
+		Span open(String name) {
+			if (depth == 0 && generation != Tracer.generation) {
+				root = new Node("");
+				generation = Tracer.generation;
+			}
+			Node parent = (depth == 0 ? root : stack[depth-1].node);
+			if (depth == stack.length) {
+				stack = Arrays.copyOf(stack, 2*depth);
+			}
+			Span span = stack[depth];
+			if (span == null) {
+				span = new Span(this);
+				stack[depth] = span;
+			}
+			span.node = parent.getChild(name);
+			span.childNanos = 0;
+			span.isOpen = true;
+			++depth;
+			span.chrono.restart();
+			return span;
+		}
+
+		void close(Span span) {
+			// Close the child spans left open, then the span
+			while (depth > 0) {
+				Span top = stack[--depth];
+				top.chrono.stop();
+				long nanos = top.chrono.getElapsedNanos();
+				top.isOpen = false;
+				top.node.count++;
+				top.node.totalNanos += nanos;
+				top.node.selfNanos += nanos - top.childNanos;
+				if (depth > 0) {
+					stack[depth-1].childNanos += nanos;
+				}
+				if (top == span) {
+					return;
+				}
+			}
+		}
+	}
+}
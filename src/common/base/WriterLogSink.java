@@ -0,0 +1,69 @@
+package common.base;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * A log sink writing text or JSON lines to a writer,
+ * like the standard output.
+ *
+ * @author nicz
+ *
+ */
+public class WriterLogSink implements LogSink {
+
+	private final Writer out;
+
+	/** True to write JSON lines, false to write text lines */
+	private final boolean isJson;
+
+	/** Buffer to format records */
+	private final StringBuilder sb;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out		the writer to write to
+	 * @param isJson	true to write JSON lines, false to write text lines
+	 */
+	public WriterLogSink(Writer out, boolean isJson) {
+		this.out = out;
+		this.isJson = isJson;
+		this.sb = new StringBuilder(256);
+	}
+
+	/**
+	 * Creates a sink writing to the standard output.
+	 *
+	 * @param isJson	true to write JSON lines, false to write text lines
+	 * @return the created sink
+	 */
+	public static WriterLogSink console(boolean isJson) {
+		return new WriterLogSink(new OutputStreamWriter(System.out), isJson);
+	}
+
+	@Override
+	public synchronized void write(LogRecord rec) throws IOException {
+		sb.setLength(0);
+		if (isJson) {
+			rec.appendJson(sb);
+		} else {
+			rec.appendText(sb);
+		}
+		out.append(sb);
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Flushes the writer, which is not closed because it may be the standard output.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		out.flush();
+	}
+}
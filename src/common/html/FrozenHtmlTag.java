@@ -0,0 +1,84 @@
+package common.html;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-only HTML fragment, for content shared by many pages
+ * like headers, menus and footers.
+ *
+ * <p>The wrapped tag is not copied: it is rendered once per indent depth
+ * and inline mode, and the rendered HTML code is reused on subsequent renders.
+ * The wrapped tag is first rendered by the constructor, so that tags which
+ * complete themselves when rendered, like auto-filled tables, are completed
+ * before the fragment is shared. Later renders are serialized, so the wrapped
+ * tag is never rendered by two threads at the same time.
+ * The wrapped tag must not be modified after it is frozen.
+ * A frozen tag may be added to many pages, including pages built
+ * in parallel by a {@link SiteGenerator}.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+public class FrozenHtmlTag extends HtmlTag {
+
+	/** The wrapped tag. */
+	private final HtmlTag tag;
+
+	/** The rendered HTML code, by indent depth and inline mode. */
+	private final Map<Integer, String> mapRendered;
+
+	/**
+	 * Constructor.
+	 * @param tag  the tag to freeze, which must not be modified afterwards
+	 */
+	public FrozenHtmlTag(HtmlTag tag) {
+		super("fragment");
+		this.tag = tag;
+		this.mapRendered = new ConcurrentHashMap<Integer, String>();
+		mapRendered.put(getKey(0, false), tag.toHtml(0, false));
+	}
+
+	@Override
+	public void writeTo(Appendable out, int iDepth, boolean isInline) throws IOException {
+		Integer key = getKey(iDepth, isInline);
+		String sHtml = mapRendered.get(key);
+		if (sHtml == null) {
+			synchronized (mapRendered) {
+				sHtml = mapRendered.get(key);
+				if (sHtml == null) {
+					sHtml = tag.toHtml(iDepth, isInline);
+					mapRendered.put(key, sHtml);
+				}
+			}
+		}
+		out.append(sHtml);
+	}
+
+	private static Integer getKey(int iDepth, boolean isInline) {
+		return Integer.valueOf(2*iDepth + (isInline ? 1 : 0));
+	}
+
+	@Override
+	public HtmlTag addAttribute(String sName, String sValue) {
+		throw new UnsupportedOperationException("Frozen HTML tag can not be modified");
+	}
+
+	@Override
+	public void addTag(HtmlTag tag) {
+		throw new UnsupportedOperationException("Frozen HTML tag can not be modified");
+	}
+
+	@Override
+	public int size() {
+		return tag.size();
+	}
+
+	@Override
+	protected int countChildren() {
+		return tag.countChildren();
+	}
+}
@@ -1,12 +1,19 @@
 package common.html;
 
-import java.io.FileWriter;
+import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
+import common.base.FlightEvent;
 import common.base.Logger;
+import common.base.Tracer;
+import common.io.AtomicFileWriter;
+import common.io.ContentHasher;
+import common.io.ExcludingAppendable;
+import common.text.TimestampFormat;
 
 /**
  * An HTML page.
@@ -20,12 +27,31 @@ public class HtmlPage {
 	
 	private static final Logger log = new Logger("HtmlPage", true);
 	
-	/** Formats date and time */
+	/**
+	 * Formats date and time. Not thread-safe, synchronize on it.
+	 * @deprecated  use {@link #timestampFormat}, which is thread-safe
+	 */
+	@Deprecated
 	protected static final DateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss");
 	
-	/** Formats dates in French without time */
+	/** Formats date and time. Thread-safe. */
+	protected static final TimestampFormat timestampFormat = new TimestampFormat();
+	
+	/**
+	 * Formats dates in French without time. Not thread-safe, synchronize on it.
+	 * @deprecated  use {@link #formatDateFr(Date)}, which is thread-safe
+	 */
+	@Deprecated
 	protected static final DateFormat dateFormatFr = DateFormat.getDateInstance(DateFormat.LONG, Locale.FRANCE);
 	
+	/** Formats dates in French without time, by thread, as pages may be built in parallel. */
+	private static final ThreadLocal<DateFormat> dateFormatsFr = new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			return DateFormat.getDateInstance(DateFormat.LONG, Locale.FRANCE);
+		}
+	};
+	
 	private String sTitle;
 	private String sFilename;
 	private String sCss;
@@ -36,6 +62,15 @@ public class HtmlPage {
 	protected final HtmlTag body;
 	protected final HtmlTag main;
 	
+	/** If true, the generation date is omitted so that the output only depends on content. */
+	private boolean isStableOutput;
+	
+	/** The generation date, formatted when the head is built. */
+	private String sGenerationDate;
+	
+	/** The generation comment, excluded from the content hash. */
+	private VolatileHtmlTag generationComment;
+	
 	/**
 	 * Constructor.
 	 * @param sTitle      the HTML page title
@@ -194,19 +229,152 @@ public class HtmlPage {
 	
 	/**
 	 * Save this page as a HTML file.
+	 * Errors are logged.
 	 */
 	public void save() {
-		log.info("Saving " + sFilename);
 		try {
-			FileWriter fw = new FileWriter(sFilename);
-			fw.write("<!DOCTYPE html>");
-			fw.write(html.toHtml(0, false));
-			fw.close();
+			saveFile();
 		} catch (Exception exc) {
 			log.error("Saving document failed: " + exc.getMessage());
 		}
 	}
 	
+	/**
+	 * Save this page as a HTML file, unless its content has not changed
+	 * since it was last saved according to the specified manifest.
+	 * The content hash is computed by rendering the page without writing it,
+	 * and the page is rendered again to the file only if the content has changed.
+	 * @param manifest  the manifest of page content hashes (may be null to always save)
+	 * @return  true if the file was written, false if it was unchanged
+	 * @throws IOException  if writing the file fails
+	 */
+	public boolean saveFile(PageManifest manifest) throws IOException {
+		if (manifest == null) {
+			saveFile();
+			return true;
+		}
+		return write(manifest);
+	}
+	
+	/**
+	 * Save this page as a HTML file, encoded in UTF-8 as declared in the head.
+	 * The HTML code is streamed to the file without building the whole document in memory.
+	 * The file is replaced atomically once fully written.
+	 * @throws IOException  if writing the file fails
+	 */
+	public void saveFile() throws IOException {
+		write(null);
+	}
+	
+	/**
+	 * Writes this page to a temporary file, and replaces the HTML file by it,
+	 * unless the manifest tells that the content has not changed:
+	 * in that case, nothing is written to disk.
+	 * @param manifest  the manifest of page content hashes, or null to always save
+	 * @return  true if the file was written, false if it was unchanged
+	 * @throws IOException  if writing the file fails
+	 */
+	private boolean write(PageManifest manifest) throws IOException {
+		FlightEvent event = FlightEvent.begin(FlightEvent.Type.PAGE_SAVE, sFilename);
+		Tracer.Span span = Tracer.span("page.write");
+		boolean isWritten = false;
+		String sHash = null;
+		try {
+			if (manifest != null) {
+				ContentHasher hasher = new ContentHasher();
+				writeTo(hasher);
+				sHash = hasher.getHash();
+				if (!manifest.needsWrite(sFilename, sHash)) {
+					log.debug("Unchanged {}", sFilename);
+					return false;
+				}
+			}
+			log.info("Saving " + sFilename);
+			AtomicFileWriter writer = new AtomicFileWriter(sFilename);
+			try {
+				writeTo(writer);
+				writer.commit();
+				isWritten = true;
+			} finally {
+				// Deletes the temporary file if not committed
+				writer.close();
+			}
+		} finally {
+			span.close();
+			event.end(isWritten && event.isRecording() ? new File(sFilename).length() : 0);
+		}
+		if (manifest != null) {
+			manifest.setWritten(sFilename, sHash);
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes the HTML code of this page to the specified output.
+	 * The rendering is recorded as an HTML render event with the number of characters.
+	 * @param out  the output to write to
+	 * @throws IOException  if writing to the output fails
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		FlightEvent event = FlightEvent.begin(FlightEvent.Type.HTML_RENDER, sFilename);
+		if (!event.isRecording()) {
+			out.append("<!DOCTYPE html>");
+			html.writeTo(out, 0, false);
+			return;
+		}
+		CharCounter counter = new CharCounter(out);
+		try {
+			counter.append("<!DOCTYPE html>");
+			html.writeTo(counter, 0, false);
+		} finally {
+			event.end(counter.nChars);
+		}
+	}
+	
+	/**
+	 * Sets the stable output mode. In stable mode, the generation date is
+	 * omitted from the head, so that the saved file is byte-identical
+	 * across runs when the content has not changed.
+	 * @param isStableOutput  true to omit the generation date
+	 */
+	public void setStableOutput(boolean isStableOutput) {
+		this.isStableOutput = isStableOutput;
+		generationComment.setTag(HtmlTagFactory.comment(getGenerationComment()));
+	}
+	
+	/**
+	 * Computes the hash of this page's HTML code, without the generation comment
+	 * which changes on every run.
+	 * @return  the content hash
+	 */
+	public String getContentHash() {
+		ContentHasher hasher = new ContentHasher();
+		try {
+			writeTo(hasher);
+		} catch (IOException exc) {
+			// Cannot happen when appending to a ContentHasher
+			throw new IllegalStateException(exc);
+		}
+		return hasher.getHash();
+	}
+	
+	/**
+	 * @return  the generation comment, dated unless in stable output mode
+	 */
+	private String getGenerationComment() {
+		String sComment = "Generated by " + sGenerator;
+		return (isStableOutput ? sComment : sComment + " on " + sGenerationDate);
+	}
+	
+	/**
+	 * Formats a date in French without time, like '17 octobre 2026'. Thread-safe.
+	 * @param date  the date to format
+	 * @return  the formatted date
+	 */
+	protected static String formatDateFr(Date date) {
+		return dateFormatsFr.get().format(date);
+	}
+	
 	public HtmlTag getHead() {
 		return head;
 	}
@@ -221,9 +389,9 @@ public class HtmlPage {
 	 * the title and CSS link.
 	 */
 	protected void buildHead() {
-		String sDate = dateFormat.format(new Date());
-		String sComment = "Generated by " + sGenerator + " on " + sDate;
-		head.addTag(HtmlTagFactory.comment(sComment));
+		sGenerationDate = timestampFormat.format();
+		generationComment = new VolatileHtmlTag(HtmlTagFactory.comment(getGenerationComment()));
+		head.addTag(generationComment);
 		head.addTag(new HtmlTag("title", sTitle));
 		head.addTag(HtmlTagFactory.cssLink(sPath + sCss));
 		head.addTag(HtmlTagFactory.iconLink());
@@ -307,11 +475,128 @@ public class HtmlPage {
 		test.save();
 	}
 	
+	/**
+	 * Internal test case: builds the same page twice in stable output mode
+	 * and checks that the HTML code is identical across builds and renders,
+	 * then checks the HTML code of a small page against the expected code.
+	 */
+	private static void testStableOutput() {
+		log.info("Testing HtmlPage stable output");
+		String[] sHtml = new String[2];
+		for (int iRun=0; iRun<2; ++iRun) {
+			HtmlPage test = new HtmlPage("Test", "test.html", "", "style.css", "testStableOutput");
+			test.setStableOutput(true);
+			HtmlTag div = test.addDiv("links");
+			div.addLink("index.html", "Index", "Back to index", false);
+			div.addImage("image.png", "An image").addAttribute("width", "100");
+			TableHtmlTag table = test.addFillTable(3, "100%");
+			for (int i=0; i<7; ++i) {
+				table.addCell(HtmlTagFactory.imageLink("page" + i + ".html", "Page " + i, "thumb" + i + ".jpg", "thumb"));
+			}
+			JavascriptHtmlTag js = new JavascriptHtmlTag(true);
+			js.addLine("init();");
+			test.add(js);
+			
+			StringBuilder sb = new StringBuilder();
+			StringBuilder sbAgain = new StringBuilder();
+			try {
+				test.writeTo(sb);
+				// Rendering again must not change the page
+				test.writeTo(sbAgain);
+			} catch (IOException exc) {
+				log.error("Rendering failed", exc);
+			}
+			if (!sb.toString().equals(sbAgain.toString())) {
+				log.error("Stable output test failed: output differs between renders");
+				return;
+			}
+			sHtml[iRun] = sb.toString();
+		}
+		if (!sHtml[0].equals(sHtml[1])) {
+			log.error("Stable output test failed: output differs between runs");
+			return;
+		}
+		
+		HtmlPage test = new HtmlPage("Test", "test.html", "", "style.css", "testStableOutput");
+		test.setStableOutput(true);
+		test.addDiv("links").addLink("index.html", "Index", "Back to \"index\" & more", false);
+		String sExpected = "<!DOCTYPE html>\n"
+			+ "<html>\n"
+			+ "  <head>\n"
+			+ "    <!-- Generated by testStableOutput -->\n"
+			+ "    <title>Test</title>\n"
+			+ "    <link rel=\"stylesheet\" type=\"text/css\" href=\"style.css\">\n"
+			+ "    <link rel=\"icon\" type=\"image/x-icon\" href=\"favicon.ico\">\n"
+			+ "    <meta name=\"author\" content=\"Nicolas Zwahlen\">\n"
+			+ "    <meta charset=\"utf-8\">\n"
+			+ "  </head>\n"
+			+ "  <body>\n"
+			+ "    <div id=\"main\">\n"
+			+ "      <div id=\"links\"><a href=\"index.html\" title=\"Back to &quot;index&quot; &amp; more\">Index</a></div>\n"
+			+ "    </div>\n"
+			+ "  </body>\n"
+			+ "</html>";
+		StringBuilder sb = new StringBuilder();
+		try {
+			test.writeTo(sb);
+		} catch (IOException exc) {
+			log.error("Rendering failed", exc);
+		}
+		if (sb.toString().equals(sExpected)) {
+			log.info("Stable output test passed");
+		} else {
+			log.error("Stable output test failed: expected\n" + sExpected + "\nbut got\n" + sb);
+		}
+	}
+	
 	/**
 	 * Main entry point.
 	 * @param args  unused
 	 */
 	public static void main(String[] args) {
+		testStableOutput();
 		testHtmlPage();
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * An output counting the characters written to another output.
+	 */
+	private static class CharCounter implements ExcludingAppendable {
+		private final Appendable out;
+		long nChars;
+		
+		CharCounter(Appendable out) {
+			this.out = out;
+			this.nChars = 0;
+		}
+		
+		@Override
+		public void setExcluding(boolean isExcluding) {
+			if (out instanceof ExcludingAppendable) {
+				((ExcludingAppendable) out).setExcluding(isExcluding);
+			}
+		}
+		
+		@Override
+		public Appendable append(CharSequence text) throws IOException {
+			if (text == null) {
+				text = "null";
+			}
+			return append(text, 0, text.length());
+		}
+		
+		@Override
+		public Appendable append(CharSequence text, int iStart, int iEnd) throws IOException {
+			out.append(text, iStart, iEnd);
+			nChars += iEnd - iStart;
+			return this;
+		}
+		
+		@Override
+		public Appendable append(char c) throws IOException {
+			out.append(c);
+			++nChars;
+			return this;
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package common.html;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Vector;
+import java.io.IOException;
+import java.util.Arrays;
+
+import common.base.FlightEvent;
+import common.io.HtmlEscaper;
 
 /**
  * An HTML tag used by HtmlPage class.
@@ -19,11 +21,26 @@ public class HtmlTag {
 	/** The tag textual content. */
 	protected String sContent;
 	
-	/** The tag's attributes. */
-	private final Map<String, String> mapAttributes;
+	/** 
+	 * The tag's attributes as name and value pairs, in insertion order.
+	 * Null until the first attribute is added.
+	 */
+	private String[] attributes;
+	
+	/** The number of attributes. */
+	private int nAttributes;
+	
+	/** The child tags. Null until the first child is added. */
+	private HtmlTag[] tags;
+	
+	/** The number of child tags. */
+	private int nTags;
 	
-	/** The child tags. */
-	private final Vector<HtmlTag> vecTags;
+	/** The parent tag, or null if this tag was not added to another tag. */
+	private HtmlTag parent;
+	
+	/** The total number of descendant tags, maintained by {@link #addTag(HtmlTag)}. */
+	private int nDescendants;
 	
 	/** Constructor. */
 	public HtmlTag(String sName) {
@@ -34,17 +51,57 @@ public class HtmlTag {
 	public HtmlTag(String sName, String sContent) {
 		this.sName = sName;
 		this.sContent = sContent;
-		this.mapAttributes = new HashMap<String, String>();
-		this.vecTags = new Vector<HtmlTag>();
+		this.attributes = null;
+		this.nAttributes = 0;
+		this.tags = null;
+		this.nTags = 0;
+		this.parent = null;
+		this.nDescendants = 0;
 	}
 	
+	/**
+	 * Sets an attribute of this element.
+	 * Attributes are rendered in the order they were first added.
+	 * @param sName   the attribute name
+	 * @param sValue  the attribute value, replacing any previous value
+	 * @return  this element
+	 */
 	public HtmlTag addAttribute(String sName, String sValue) {
-		this.mapAttributes.put(sName, sValue);
+		for (int i=0; i<nAttributes; ++i) {
+			if (attributes[2*i].equals(sName)) {
+				attributes[2*i+1] = sValue;
+				return this;
+			}
+		}
+		if (attributes == null) {
+			attributes = new String[4];
+		} else if (2*nAttributes == attributes.length) {
+			attributes = Arrays.copyOf(attributes, 2*attributes.length);
+		}
+		attributes[2*nAttributes]   = sName;
+		attributes[2*nAttributes+1] = sValue;
+		++nAttributes;
 		return this;
 	}
 	
+	/**
+	 * Adds a child tag to this element.
+	 * The descendant counts of this element and its ancestors are updated,
+	 * so a tag should only be added to a single parent.
+	 * @param tag  the tag to add
+	 */
 	public void addTag(HtmlTag tag) {
-		vecTags.add(tag);
+		if (tags == null) {
+			tags = new HtmlTag[2];
+		} else if (nTags == tags.length) {
+			tags = Arrays.copyOf(tags, 2*tags.length);
+		}
+		tags[nTags++] = tag;
+		tag.parent = this;
+		int nAdded = 1 + tag.countChildren();
+		for (HtmlTag ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+			ancestor.nDescendants += nAdded;
+		}
 	}
 
 	/**
@@ -189,43 +246,80 @@ public class HtmlTag {
 		addTag(HtmlTagFactory.cssLink(ref));
 	}
 	
+	/**
+	 * Returns a read-only view of this element that is rendered only once
+	 * per indent depth. The view wraps this element without copying it,
+	 * so this element must not be modified afterwards.
+	 * @return  the frozen element
+	 */
+	public FrozenHtmlTag freeze() {
+		return new FrozenHtmlTag(this);
+	}
+	
 	public void setClass(String sClass) {
 		this.addAttribute("class", sClass);
 	}
 	
 	public int size() {
-		return vecTags.size();
+		return nTags;
 	}
 	
+	/**
+	 * Renders this element and its children as an HTML string.
+	 * @param iDepth    the indent depth
+	 * @param isInline  if true, do not start on a new line
+	 * @return  the HTML code
+	 */
 	public String toHtml(int iDepth, boolean isInline) {
-		StringBuffer sbHtml = new StringBuffer();
+		FlightEvent event = FlightEvent.begin(FlightEvent.Type.HTML_RENDER, sName);
+		StringBuilder sbHtml = new StringBuilder();
+		try {
+			writeTo(sbHtml, iDepth, isInline);
+		} catch (IOException exc) {
+			// Cannot happen when appending to a StringBuilder
+			throw new IllegalStateException(exc);
+		}
+		event.end(sbHtml.length());
+		return sbHtml.toString();
+	}
+	
+	/**
+	 * Writes this element and its children directly to the specified output,
+	 * without building intermediate strings.
+	 * @param out       the output to write to
+	 * @param iDepth    the indent depth
+	 * @param isInline  if true, do not start on a new line
+	 * @throws IOException  if writing to the output fails
+	 */
+	public void writeTo(Appendable out, int iDepth, boolean isInline) throws IOException {
 		int nChildren = countChildren();
 		
 		if (!isInline) {
-			sbHtml.append(getIndent(iDepth));
+			writeIndent(out, iDepth);
 		}
 		
-		sbHtml.append("<" + sName);
-		for (String sKey : mapAttributes.keySet()) {
-			sbHtml.append(" " + sKey + "=\"" + mapAttributes.get(sKey) + "\"");
+		out.append('<').append(sName);
+		for (int i=0; i<nAttributes; ++i) {
+			out.append(' ').append(attributes[2*i]).append("=\"");
+			HtmlEscaper.escapeAttribute(attributes[2*i+1], out);
+			out.append('"');
 		}
-		sbHtml.append(">");
+		out.append('>');
 		
 		if (sContent != null) {
-			sbHtml.append(sContent);
+			out.append(sContent);
 		}
 		
-		for (HtmlTag tag : vecTags) {
-			sbHtml.append(tag.toHtml(iDepth+1, nChildren < 2));
+		for (int i=0; i<nTags; ++i) {
+			tags[i].writeTo(out, iDepth+1, nChildren < 2);
 		}
 
 		if (needEndTag()) {
 			if (!isInline && nChildren > 1) {
-				sbHtml.append(getIndent(iDepth));
+				writeIndent(out, iDepth);
 			}
-			sbHtml.append("</" + sName + ">");
+			out.append("</").append(sName).append('>');
 		}
-		return sbHtml.toString();
 	}
 	
 	/**
@@ -234,19 +328,36 @@ public class HtmlTag {
 	 * @return newline and indent
 	 */
 	protected String getIndent(int iDepth) {
-		String indent = "\n";
+		StringBuilder sbIndent = new StringBuilder(1 + 2*iDepth);
+		try {
+			writeIndent(sbIndent, iDepth);
+		} catch (IOException exc) {
+			// Cannot happen when appending to a StringBuilder
+			throw new IllegalStateException(exc);
+		}
+		return sbIndent.toString();
+	}
+	
+	/**
+	 * Writes a newline followed by 2*iDepth spaces.
+	 * @param out     the output to write to
+	 * @param iDepth  the indent depth
+	 * @throws IOException  if writing to the output fails
+	 */
+	protected void writeIndent(Appendable out, int iDepth) throws IOException {
+		out.append('\n');
 		for (int i=0; i<iDepth; ++i) {
-			indent += "  ";
+			out.append("  ");
 		}
-		return indent;
 	}
 	
+	/**
+	 * Returns the total number of descendant tags of this element.
+	 * The count is maintained when tags are added, so this is O(1).
+	 * @return  the number of descendants
+	 */
 	protected int countChildren() {
-		int count = size();
-		for (HtmlTag tag : vecTags) {
-			count += tag.countChildren();
-		}
-		return count;
+		return nDescendants;
 	}
 	
 	protected boolean needEndTag() {
@@ -1,5 +1,7 @@
 package common.html;
 
+import java.io.IOException;
+
 /**
  * A factory for various HTML elements.
  *
@@ -242,8 +244,9 @@ public class HtmlTagFactory {
 	 */
 	public static HtmlTag comment(final String sComment) {
 		return new HtmlTag("c") {
-			public String toHtml(int iDepth, boolean isInline) {
-				return getIndent(iDepth) + "<!-- " + sComment + " -->";
+			public void writeTo(Appendable out, int iDepth, boolean isInline) throws IOException {
+				writeIndent(out, iDepth);
+				out.append("<!-- ").append(sComment).append(" -->");
 			}
 		};
 	}
@@ -1,5 +1,6 @@
 package common.html;
 
+import java.io.IOException;
 import java.util.Vector;
 
 /**
@@ -43,32 +44,46 @@ public class JavascriptHtmlTag extends HtmlTag {
 	}
 	
 	@Override
-	public String toHtml(int iDepth, boolean isInline) {
+	public void writeTo(Appendable out, int iDepth, boolean isInline) throws IOException {
+		int nChildren = vecLines.size();
 		if (isDocumentReady) {
-			vecLines.add(0, "$(document).ready(function() {");
-			vecLines.add("});");
+			nChildren += 2;
 		}
-		
-		StringBuffer sbHtml = new StringBuffer();
-		int nChildren = vecLines.size();
+		boolean isMultiLine = !isInline && nChildren > 1;
 
 		if (!isInline) {
-			sbHtml.append(getIndent(iDepth));
+			writeIndent(out, iDepth);
 		}
-		sbHtml.append("<script>");
+		out.append("<script>");
 		
+		if (isDocumentReady) {
+			writeLine(out, "$(document).ready(function() {", iDepth + 1, isMultiLine);
+		}
 		for (String line : vecLines) {
-			if (!isInline && nChildren > 1) {
-				sbHtml.append(getIndent(iDepth + 1));
-			}
-			sbHtml.append(line);
+			writeLine(out, line, iDepth + 1, isMultiLine);
+		}
+		if (isDocumentReady) {
+			writeLine(out, "});", iDepth + 1, isMultiLine);
 		}
 		
-		if (!isInline && nChildren > 1) {
-			sbHtml.append(getIndent(iDepth));
+		if (isMultiLine) {
+			writeIndent(out, iDepth);
 		}
-		sbHtml.append("</script>");
-
-		return sbHtml.toString();
+		out.append("</script>");
+	}
+	
+	/**
+	 * Writes a line of JS code, with indent if needed.
+	 * @param out          the output to write to
+	 * @param line         the JS code
+	 * @param iDepth       the indent depth
+	 * @param isMultiLine  if true, start the line with newline and indent
+	 * @throws IOException  if writing to the output fails
+	 */
+	private void writeLine(Appendable out, String line, int iDepth, boolean isMultiLine) throws IOException {
+		if (isMultiLine) {
+			writeIndent(out, iDepth);
+		}
+		out.append(line);
 	}
 }
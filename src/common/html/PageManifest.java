@@ -0,0 +1,148 @@
+package common.html;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import common.base.Logger;
+import common.io.AtomicFileWriter;
+
+/**
+ * A persistent manifest of the content hashes of generated HTML pages,
+ * used to skip writing pages that have not changed since the last run.
+ *
+ * <p>The manifest file has one line per page, with the hash and
+ * the file path separated by two spaces, like sha256sum output.
+ * The manifest may be used by several threads at the same time.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+public class PageManifest {
+
+	private static final Logger log = new Logger("PageManifest", true);
+
+	/** The manifest file. */
+	private final File file;
+
+	/** The content hashes, by page file path. */
+	private final Map<String, String> mapHashes;
+
+	/** The number of pages written since the manifest was loaded. */
+	private final AtomicInteger nWritten;
+
+	/** The number of unchanged pages skipped since the manifest was loaded. */
+	private final AtomicInteger nSkipped;
+
+	/**
+	 * Constructor. Loads the manifest file if it exists.
+	 * @param sFilename  the path of the manifest file
+	 * @throws IOException  if the manifest file exists but can not be read
+	 */
+	public PageManifest(String sFilename) throws IOException {
+		this.file = new File(sFilename);
+		this.mapHashes = new ConcurrentHashMap<String, String>();
+		this.nWritten = new AtomicInteger();
+		this.nSkipped = new AtomicInteger();
+		load();
+	}
+
+	/**
+	 * Checks if the page file must be written.
+	 * This is the case if the file does not exist or its content hash has changed.
+	 * @param sFilename  the page file path
+	 * @param sHash      the page content hash
+	 * @return  true if the page must be written
+	 */
+	public boolean needsWrite(String sFilename, String sHash) {
+		boolean isChanged = !sHash.equals(mapHashes.get(sFilename)) || !new File(sFilename).exists();
+		if (!isChanged) {
+			nSkipped.incrementAndGet();
+		}
+		return isChanged;
+	}
+
+	/**
+	 * Records the content hash of a page file that was written.
+	 * @param sFilename  the page file path
+	 * @param sHash      the page content hash
+	 */
+	public void setWritten(String sFilename, String sHash) {
+		mapHashes.put(sFilename, sHash);
+		nWritten.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of pages written since the manifest was loaded.
+	 */
+	public int getWrittenCount() {
+		return nWritten.get();
+	}
+
+	/**
+	 * @return the number of unchanged pages skipped since the manifest was loaded.
+	 */
+	public int getSkippedCount() {
+		return nSkipped.get();
+	}
+
+	/**
+	 * Saves the manifest file in UTF-8, with pages sorted by path.
+	 * The file is replaced atomically once fully written, so that an interrupted
+	 * save leaves the previous manifest.
+	 * @throws IOException  if writing the file fails
+	 */
+	public void save() throws IOException {
+		log.info("Saving manifest " + file.getPath() + ": " + nWritten.get() + " pages written, "
+			+ nSkipped.get() + " unchanged");
+		List<String> listFilenames = new ArrayList<String>(mapHashes.keySet());
+		Collections.sort(listFilenames);
+		String sNewLine = System.lineSeparator();
+		AtomicFileWriter writer = new AtomicFileWriter(file.getPath());
+		try {
+			for (String sFilename : listFilenames) {
+				writer.append(mapHashes.get(sFilename));
+				writer.append("  ");
+				writer.append(sFilename);
+				writer.append(sNewLine);
+			}
+			writer.commit();
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Loads the manifest file, if it exists.
+	 */
+	private void load() throws IOException {
+		if (!file.exists()) {
+			log.info("No manifest " + file.getPath() + ", all pages will be written");
+			return;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int iSep = line.indexOf("  ");
+				if (iSep > 0) {
+					mapHashes.put(line.substring(iSep + 2), line.substring(0, iSep));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		log.info("Loaded manifest " + file.getPath() + " with " + mapHashes.size() + " pages");
+	}
+}
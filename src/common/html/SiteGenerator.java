@@ -0,0 +1,279 @@
+package common.html;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import common.base.Chronometer;
+import common.base.FlightEvent;
+import common.base.Logger;
+import common.base.MetricsRegistry;
+import common.base.Tracer;
+import common.exceptions.AppException;
+import common.listeners.ProgressListener;
+
+/**
+ * Generates many HTML pages in parallel.
+ *
+ * <p>Each page is produced by a task that builds an {@link HtmlPage}.
+ * Tasks are run on an executor, where the page is built and saved.
+ * At most a given number of pages are in flight at the same time,
+ * which bounds the memory used by built pages waiting to be saved.
+ *
+ * <p>If a {@link PageManifest} is set, pages whose content has not changed
+ * since the last generation are not written, and the manifest is saved
+ * after generation.
+ *
+ * <p>The time to build and save each page is recorded in the timer
+ * 'site.page' of the default {@link MetricsRegistry}, and the numbers of
+ * written and unchanged pages in the counters 'site.pages.written'
+ * and 'site.pages.unchanged'.
+ *
+ * <p>When {@link Tracer} is enabled, each page is traced in a span 'site.page'
+ * with child spans 'page.build' and the save spans of {@link HtmlPage}.
+ *
+ * <p>The progress listener is only called from the thread calling
+ * {@link #generate()}, so it may update widgets if this is the UI thread.
+ * Any executor may be used, for example a fork-join pool or,
+ * on Java 21 and later, a virtual thread per task executor.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+public class SiteGenerator {
+
+	private static final Logger log = new Logger("SiteGenerator", true);
+
+	/** The executor running the page tasks. */
+	private final ExecutorService executor;
+
+	/** True if the executor was created by this generator. */
+	private final boolean isOwnExecutor;
+
+	/** The maximum number of pages being built or saved at the same time. */
+	private final int maxInFlight;
+
+	/** The page tasks to run on next generation. */
+	private final Vector<Callable<? extends HtmlPage>> vecTasks;
+
+	/** The optional progress listener. */
+	private ProgressListener listener;
+
+	/** The optional manifest of page content hashes, for incremental generation. */
+	private PageManifest manifest;
+
+	/**
+	 * Constructor with one thread per available processor.
+	 */
+	public SiteGenerator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor with a fixed number of threads.
+	 * @param nThreads  the number of threads building and saving pages
+	 */
+	public SiteGenerator(int nThreads) {
+		this(Executors.newFixedThreadPool(nThreads, new DaemonThreadFactory()), 2*nThreads, true);
+	}
+
+	/**
+	 * Constructor with the specified executor.
+	 * The executor is not shut down by this generator.
+	 * @param executor     the executor running the page tasks
+	 * @param maxInFlight  the maximum number of pages being built or saved at the same time
+	 */
+	public SiteGenerator(ExecutorService executor, int maxInFlight) {
+		this(executor, maxInFlight, false);
+	}
+
+	private SiteGenerator(ExecutorService executor, int maxInFlight, boolean isOwnExecutor) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("Invalid maximum number of pages in flight: " + maxInFlight);
+		}
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.isOwnExecutor = isOwnExecutor;
+		this.vecTasks = new Vector<Callable<? extends HtmlPage>>();
+		this.listener = null;
+		this.manifest = null;
+	}
+
+	/**
+	 * Sets the listener notified about generation progress.
+	 * @param listener  the progress listener (may be null)
+	 */
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the manifest of page content hashes, to only write changed pages.
+	 * @param manifest  the page manifest (may be null to write all pages)
+	 */
+	public void setManifest(PageManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	/**
+	 * Adds a task building a page to generate.
+	 * The task is called on an executor thread, so it must not access widgets.
+	 * @param task  the task building the page
+	 */
+	public void addPage(Callable<? extends HtmlPage> task) {
+		vecTasks.add(task);
+	}
+
+	/**
+	 * Builds and saves all added pages, and waits until they are all saved.
+	 * The added tasks are cleared, even if generation fails.
+	 * @return  the number of generated pages, including unchanged pages not written
+	 * @throws AppException  if a page could not be built or saved, or if interrupted
+	 */
+	public int generate() throws AppException {
+		Vector<Callable<? extends HtmlPage>> vecPending = new Vector<Callable<? extends HtmlPage>>(vecTasks);
+		vecTasks.clear();
+
+		int nTotal = vecPending.size();
+		log.info("Generating " + nTotal + " pages");
+		FlightEvent event = FlightEvent.begin(FlightEvent.Type.TASK, "SiteGenerator");
+		if (listener != null) {
+			listener.taskStarted(nTotal);
+		}
+
+		CompletionService<HtmlPage> completion = new ExecutorCompletionService<HtmlPage>(executor);
+		// The pages in flight, to cancel them if interrupted
+		Set<Future<HtmlPage>> setInFlight = new HashSet<Future<HtmlPage>>();
+		int nSubmitted = 0;
+		int nDone = 0;
+		int nFailed = 0;
+		String sFirstError = null;
+		try {
+			while (nDone < nTotal) {
+				// Keep up to maxInFlight pages in flight
+				while (nSubmitted < nTotal && nSubmitted - nDone < maxInFlight) {
+					setInFlight.add(completion.submit(new SavePageTask(vecPending.get(nSubmitted), manifest)));
+					vecPending.set(nSubmitted, null);
+					++nSubmitted;
+				}
+
+				Future<HtmlPage> future = completion.take();
+				setInFlight.remove(future);
+				++nDone;
+				try {
+					future.get();
+				} catch (ExecutionException exc) {
+					++nFailed;
+					Throwable cause = (exc.getCause() == null ? exc : exc.getCause());
+					log.error("Page generation failed: " + cause.getMessage());
+					if (sFirstError == null) {
+						sFirstError = cause.getMessage();
+					}
+				}
+				if (listener != null) {
+					listener.taskProgress();
+				}
+			}
+		} catch (InterruptedException exc) {
+			for (Future<HtmlPage> future : setInFlight) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new AppException("Site generation interrupted after " + nDone + " pages", exc);
+		} finally {
+			if (listener != null) {
+				listener.taskFinished();
+			}
+			event.end(nTotal);
+		}
+
+		if (manifest != null) {
+			// Save hashes of the pages written, even if some pages failed
+			try {
+				manifest.save();
+			} catch (IOException exc) {
+				throw new AppException("Failed to save page manifest: " + exc.getMessage(), exc);
+			}
+		}
+		if (nFailed > 0) {
+			throw new AppException(nFailed + " of " + nTotal + " pages failed, first error: " + sFirstError);
+		}
+		log.info("Generated " + nTotal + " pages");
+		return nTotal;
+	}
+
+	/**
+	 * Shuts down the executor if it was created by this generator.
+	 */
+	public void shutdown() {
+		if (isOwnExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * A task building a page and saving it if changed.
+	 */
+	private static class SavePageTask implements Callable<HtmlPage> {
+		private final Callable<? extends HtmlPage> pageTask;
+		private final PageManifest manifest;
+
+		SavePageTask(Callable<? extends HtmlPage> pageTask, PageManifest manifest) {
+			this.pageTask = pageTask;
+			this.manifest = manifest;
+		}
+
+		@Override
+		public HtmlPage call() throws Exception {
+			MetricsRegistry metrics = MetricsRegistry.getDefault();
+			Chronometer chrono = new Chronometer();
+			Tracer.Span span = Tracer.span("site.page");
+			try {
+				Tracer.Span buildSpan = Tracer.span("page.build");
+				HtmlPage page;
+				try {
+					page = pageTask.call();
+				} finally {
+					buildSpan.close();
+				}
+				if (page.saveFile(manifest)) {
+					metrics.counter("site.pages.written").increment();
+				} else {
+					metrics.counter("site.pages.unchanged").increment();
+				}
+			} finally {
+				span.close();
+			}
+			chrono.stop(metrics.timer("site.page"));
+			// Do not keep the page tree in the completion queue
+			return null;
+		}
+	}
+
+	/**
+	 * Creates named daemon threads, so that an unused generator
+	 * does not prevent the application from exiting.
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private static final AtomicInteger nCreated = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "SiteGenerator-" + nCreated.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package common.html;
 
+import java.io.IOException;
 import java.util.Vector;
 
 /**
@@ -37,13 +38,13 @@ public class TableHtmlTag extends HtmlTag {
 	}
 	
 	@Override
-	public String toHtml(int iDepth, boolean isInline) {
+	public void writeTo(Appendable out, int iDepth, boolean isInline) throws IOException {
 		if (bAutoFill && row != null) {
 			while (row != null && row.size() % nCellsPerRow > 0) {
 				addCell();
 			}
 		}
-		return super.toHtml(iDepth, isInline);
+		super.writeTo(out, iDepth, isInline);
 	}
 	
 	/**
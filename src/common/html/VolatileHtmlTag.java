@@ -0,0 +1,57 @@
+package common.html;
+
+import java.io.IOException;
+
+import common.io.ContentHasher;
+import common.io.ExcludingAppendable;
+
+/**
+ * An HTML element whose content changes on every run, like a generation date.
+ *
+ * <p>The wrapped tag is written like any other tag, but excluded from
+ * the content hash of the page when written to a {@link ContentHasher},
+ * or to any {@link ExcludingAppendable}, so that a page is not considered
+ * changed because of it.
+ *
+ * <p><b>Modifications:</b>
+ * <ul>
+ * <li>17.10.2026: nicz - Creation</li>
+ * </ul>
+ */
+public class VolatileHtmlTag extends HtmlTag {
+
+	/** The wrapped tag. */
+	private HtmlTag tag;
+
+	/**
+	 * Constructor.
+	 * @param tag  the tag to write without hashing it
+	 */
+	public VolatileHtmlTag(HtmlTag tag) {
+		super("volatile");
+		this.tag = tag;
+	}
+
+	/**
+	 * Replaces the wrapped tag.
+	 * @param tag  the tag to write without hashing it
+	 */
+	public void setTag(HtmlTag tag) {
+		this.tag = tag;
+	}
+
+	@Override
+	public void writeTo(Appendable out, int iDepth, boolean isInline) throws IOException {
+		if (out instanceof ExcludingAppendable) {
+			ExcludingAppendable excluding = (ExcludingAppendable) out;
+			excluding.setExcluding(true);
+			try {
+				tag.writeTo(out, iDepth, isInline);
+			} finally {
+				excluding.setExcluding(false);
+			}
+		} else {
+			tag.writeTo(out, iDepth, isInline);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package common.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An {@link Appendable} writing text to a file in UTF-8, atomically.
+ *
+ * <p>The text is encoded directly into a direct byte buffer, taken from a pool,
+ * and written to a temporary file in the same directory through a file channel,
+ * without intermediate strings or char buffers.
+ * {@link #commit()} forces the temporary file to disk and renames it to the target file,
+ * replacing it atomically if the file system supports it, so that readers
+ * never see a partially written file, even after a crash.
+ *
+ * <p>Usage:
+ * <pre>
+ * AtomicFileWriter writer = new AtomicFileWriter(sFilename);
+ * try {
+ *     writer.append(...);
+ *     writer.commit();
+ * } finally {
+ *     writer.close();
+ * }
+ * </pre>
+ * Closing without committing deletes the temporary file and keeps the target file.
+ * The temporary file is only created when the buffer is first written,
+ * so that a small text discarded without committing never touches the disk.
+ *
+ * <p>Unpaired surrogate characters are written as '?', like the standard UTF-8 encoder.
+ * A writer must only be used by one thread.
+ *
+ * @author nicz
+ *
+ */
+public class AtomicFileWriter implements Appendable, Closeable {
+
+	/** The size of pooled buffers */
+	private static final int BUFFER_SIZE = 64*1024;
+
+	/** The maximum number of buffers kept in the pool */
+	private static final int MAX_POOLED = 16;
+
+	/** The pool of direct buffers, shared by all writers */
+	private static final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	private final File file;
+
+	/** The temporary file, created when the buffer is first written, or null */
+	private File tempFile;
+	private FileOutputStream stream;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+
+	/** A high surrogate waiting for the next character, or 0 */
+	private char highSurrogate;
+
+	private boolean isCommitted;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sFilename the path of the file to write
+	 */
+	public AtomicFileWriter(String sFilename) {
+		this.file = new File(sFilename).getAbsoluteFile();
+		ByteBuffer pooled = bufferPool.poll();
+		this.buffer = (pooled == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : pooled);
+		this.highSurrogate = 0;
+		this.isCommitted = false;
+	}
+
+	@Override
+	public AtomicFileWriter append(CharSequence text) throws IOException {
+		if (text == null) {
+			text = "null";
+		}
+		return append(text, 0, text.length());
+	}
+
+	@Override
+	public AtomicFileWriter append(CharSequence text, int iStart, int iEnd) throws IOException {
+		if (text == null) {
+			text = "null";
+		}
+		ByteBuffer buf = buffer;
+		for (int i=iStart; i<iEnd; ++i) {
+			char c = text.charAt(i);
+			if (c < 0x80 && highSurrogate == 0) {
+				if (!buf.hasRemaining()) {
+					flushBuffer();
+				}
+				buf.put((byte) c);
+			} else {
+				append(c);
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public AtomicFileWriter append(char c) throws IOException {
+		if (buffer.remaining() < 4) {
+			flushBuffer();
+		}
+		ByteBuffer buf = buffer;
+		if (highSurrogate != 0) {
+			char high = highSurrogate;
+			highSurrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				int codePoint = Character.toCodePoint(high, c);
+				buf.put((byte) (0xf0 | (codePoint >> 18)));
+				buf.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+				buf.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+				buf.put((byte) (0x80 | (codePoint & 0x3f)));
+				return this;
+			}
+			buf.put((byte) '?');
+			return append(c);
+		}
+
+		if (c < 0x80) {
+			buf.put((byte) c);
+		} else if (c < 0x800) {
+			buf.put((byte) (0xc0 | (c >> 6)));
+			buf.put((byte) (0x80 | (c & 0x3f)));
+		} else if (Character.isHighSurrogate(c)) {
+			highSurrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			buf.put((byte) '?');
+		} else {
+			buf.put((byte) (0xe0 | (c >> 12)));
+			buf.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+			buf.put((byte) (0x80 | (c & 0x3f)));
+		}
+		return this;
+	}
+
+	/**
+	 * Writes the remaining text and replaces the target file by the written file.
+	 *
+	 * @throws IOException if writing or renaming fails
+	 */
+	public void commit() throws IOException {
+		if (highSurrogate != 0) {
+			highSurrogate = 0;
+			buffer.put((byte) '?');
+		}
+		flushBuffer();
+		// The content must be on disk before the rename, or a crash could leave an empty target file
+		channel.force(true);
+		stream.close();
+		try {
+			Files.move(tempFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException exc) {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		isCommitted = true;
+	}
+
+	/**
+	 * Releases the buffer and the file. Deletes the temporary file if not committed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (buffer != null) {
+			buffer.clear();
+			if (bufferPool.size() < MAX_POOLED) {
+				bufferPool.offer(buffer);
+			}
+			buffer = null;
+		}
+		if (!isCommitted && tempFile != null) {
+			try {
+				stream.close();
+			} finally {
+				if (tempFile.exists() && !tempFile.delete()) {
+					throw new IOException("Could not delete temporary file " + tempFile.getPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffer content to the channel and clears the buffer.
+	 */
+	private void flushBuffer() throws IOException {
+		if (tempFile == null) {
+			File temp = File.createTempFile("." + file.getName(), ".tmp", file.getParentFile());
+			try {
+				stream = new FileOutputStream(temp);
+			} catch (IOException exc) {
+				temp.delete();
+				throw exc;
+			}
+			channel = stream.getChannel();
+			tempFile = temp;
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
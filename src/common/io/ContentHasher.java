@@ -0,0 +1,136 @@
+package common.io;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An {@link Appendable} computing a SHA-256 hash of the appended text,
+ * without keeping the text in memory.
+ *
+ * <p>Used to detect if a generated document has changed
+ * since it was last written. The text may also be forwarded to an output,
+ * so that a document is hashed while it is written.
+ * Parts of the text which change on every run, like a generation date,
+ * are forwarded but not hashed between {@link #setExcluding(boolean)} calls.
+ *
+ * @author nicz
+ *
+ */
+public class ContentHasher implements ExcludingAppendable {
+
+	private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+	private final MessageDigest digest;
+
+	/** The output the text is forwarded to, or null. */
+	private final Appendable out;
+
+	/** If true, the appended text is forwarded but not hashed. */
+	private boolean isExcluding;
+
+	/** Buffer of UTF-16 bytes to update the digest. */
+	private final byte[] buffer;
+
+	/** The number of bytes in the buffer. */
+	private int nBuffered;
+
+	/**
+	 * Constructor, for a hasher without output.
+	 */
+	public ContentHasher() {
+		this(null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param out  the output the appended text is forwarded to, or null
+	 */
+	public ContentHasher(Appendable out) {
+		this.out = out;
+		this.isExcluding = false;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException exc) {
+			// Every Java platform supports SHA-256
+			throw new IllegalStateException(exc);
+		}
+		buffer = new byte[1024];
+		nBuffered = 0;
+	}
+
+	/**
+	 * Starts or stops excluding the appended text from the hash.
+	 * @param isExcluding  true to forward the appended text without hashing it
+	 */
+	@Override
+	public void setExcluding(boolean isExcluding) {
+		this.isExcluding = isExcluding;
+		if (out instanceof ExcludingAppendable) {
+			((ExcludingAppendable) out).setExcluding(isExcluding);
+		}
+	}
+
+	@Override
+	public ContentHasher append(CharSequence text) throws IOException {
+		if (text == null) {
+			text = "null";
+		}
+		return append(text, 0, text.length());
+	}
+
+	@Override
+	public ContentHasher append(CharSequence text, int iStart, int iEnd) throws IOException {
+		if (text == null) {
+			text = "null";
+		}
+		if (out != null) {
+			out.append(text, iStart, iEnd);
+		}
+		if (!isExcluding) {
+			for (int i=iStart; i<iEnd; ++i) {
+				hash(text.charAt(i));
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public ContentHasher append(char c) throws IOException {
+		if (out != null) {
+			out.append(c);
+		}
+		if (!isExcluding) {
+			hash(c);
+		}
+		return this;
+	}
+
+	/**
+	 * Completes the hash computation and resets this hasher.
+	 * @return the hash as a lowercase hexadecimal string
+	 */
+	public String getHash() {
+		flush();
+		byte[] hash = digest.digest();
+		char[] hex = new char[2*hash.length];
+		for (int i=0; i<hash.length; ++i) {
+			hex[2*i]   = hexDigits[(hash[i] >> 4) & 0xf];
+			hex[2*i+1] = hexDigits[hash[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	private void hash(char c) {
+		if (nBuffered + 2 > buffer.length) {
+			flush();
+		}
+		buffer[nBuffered++] = (byte) (c >> 8);
+		buffer[nBuffered++] = (byte) c;
+	}
+
+	private void flush() {
+		digest.update(buffer, 0, nBuffered);
+		nBuffered = 0;
+	}
+}
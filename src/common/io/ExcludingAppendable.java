@@ -0,0 +1,20 @@
+package common.io;
+
+/**
+ * An {@link Appendable} which may leave parts of the appended text out of
+ * what it computes, like a content hash, while still writing them.
+ *
+ * <p>Outputs wrapping another output should forward {@link #setExcluding(boolean)}
+ * to it, so that the exclusion is not lost on the way.
+ *
+ * @author nicz
+ *
+ */
+public interface ExcludingAppendable extends Appendable {
+
+	/**
+	 * Starts or stops excluding the appended text.
+	 * @param isExcluding  true to write the appended text without computing on it
+	 */
+	void setExcluding(boolean isExcluding);
+}
@@ -1,5 +1,6 @@
 package common.io;
 
+import java.io.IOException;
 import java.util.Vector;
 
 
@@ -9,9 +10,15 @@ import java.util.Vector;
  * design pattern.
  * 
  * <p>A composite specifies how to write its HTML code through the
- * {@link #write} method.
+ * {@link #writeTo(Appendable)} method, which streams the code to any output
+ * like a StringBuilder or a Writer. The older {@link #write(StringBuffer)}
+ * method is still supported for callers, and writes through {@link #writeTo(Appendable)}.
  * Factory methods allow to add various children to a composite.
  * 
+ * <p>The generated code only depends on the components and their
+ * parameters, which are written in a fixed order, so it is identical
+ * across runs and JVMs.
+ * 
  * @author nicz
  *
  */
@@ -21,6 +28,17 @@ public abstract class HtmlComposite {
 	 * The indent between a component and its children
 	 */
 	private static final String indent = "  ";
+	
+	/**
+	 * Precomputed indentations, by level.
+	 */
+	private static final String[] indents = new String[16];
+	static {
+		indents[0] = "";
+		for (int i=1; i<indents.length; ++i) {
+			indents[i] = indents[i-1] + indent;
+		}
+	}
 
 	/**
 	 * The list of children of this component.
@@ -59,12 +77,27 @@ public abstract class HtmlComposite {
 	}
 	
 	/**
-	 * Write this component's HTML code to the given string buffer.
-	 * Must be implemented by subclasses.
+	 * Write this component's HTML code to the given output.
+	 * 
+	 * @param out the output on which to write
+	 * @throws IOException if writing to the output fails
+	 */
+	public abstract void writeTo(Appendable out) throws IOException;
+	
+	/**
+	 * Write this component's HTML code to the given string buffer,
+	 * using {@link #writeTo(Appendable)}.
 	 * 
 	 * @param sb the string buffer on which to write
 	 */
-	public abstract void write(StringBuffer sb);
+	public void write(StringBuffer sb) {
+		try {
+			writeTo(sb);
+		} catch (IOException exc) {
+			// Cannot happen when appending to a StringBuffer
+			throw new IllegalStateException(exc);
+		}
+	}
 
 	/**
 	 * Creates an HTML tag with the given name.
@@ -76,10 +109,14 @@ public abstract class HtmlComposite {
 	public HtmlComposite addTag(final String name) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, makeTag(name));
-				writeChildren(sb);
-				output(sb, makeEndTag(name));
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				writeTag(out, name);
+				endLine(out);
+				writeChildren(out);
+				startLine(out);
+				writeEndTag(out, name);
+				endLine(out);
 			}
 		});
 	}
@@ -95,8 +132,12 @@ public abstract class HtmlComposite {
 	public HtmlComposite addTag(final String name, final String content) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, makeTag(name) + content + makeEndTag(name));
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				writeTag(out, name);
+				out.append(content);
+				writeEndTag(out, name);
+				endLine(out);
 			}
 		});
 	}
@@ -111,10 +152,17 @@ public abstract class HtmlComposite {
 	public HtmlComposite addDiv(final String divId) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<div" + makeParam("id", divId) + makeParam("class", cssClass) + ">");
-				writeChildren(sb);
-				output(sb, "</div> <!-- end " + divId + " -->\n");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<div");
+				writeParam(out, "id", divId);
+				writeParam(out, "class", cssClass);
+				out.append('>');
+				endLine(out);
+				writeChildren(out);
+				startLine(out);
+				out.append("</div> <!-- end ").append(divId).append(" -->\n");
+				endLine(out);
 			}
 		});
 	}
@@ -128,10 +176,14 @@ public abstract class HtmlComposite {
 	public HtmlComposite addDiv() {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<div" + makeParam("class", cssClass) + ">\n");
-				writeChildren(sb);
-				output(sb, "</div>\n");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<div");
+				writeParam(out, "class", cssClass);
+				out.append(">\n");
+				endLine(out);
+				writeChildren(out);
+				output(out, "</div>\n");
 			}
 		});
 	}
@@ -139,8 +191,12 @@ public abstract class HtmlComposite {
 	public void addSpan(final String cssClassm, final String text) {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<span" + makeParam("class", cssClassm) + ">" + text + "</span>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<span");
+				writeParam(out, "class", cssClassm);
+				out.append('>').append(text).append("</span>");
+				endLine(out);
 			}
 		});
 	}
@@ -157,8 +213,14 @@ public abstract class HtmlComposite {
 			addNewLine();
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<h" + level + ">" + title + "</h" + level + ">");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<h");
+				writeDigits(out, level);
+				out.append('>').append(title).append("</h");
+				writeDigits(out, level);
+				out.append('>');
+				endLine(out);
 			}
 		});
 	}
@@ -200,12 +262,15 @@ public abstract class HtmlComposite {
 			final String cssClass, final String title) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<img" + 
-						makeParam("src", src) + 
-						makeParam("alt", alt) + 
-						makeParam("class", cssClass)  +
-						makeParam("title", title) + ">");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<img");
+				writeParam(out, "src", src);
+				writeParam(out, "alt", alt);
+				writeParam(out, "class", cssClass);
+				writeParam(out, "title", title);
+				out.append('>');
+				endLine(out);
 			}
 		});
 	}
@@ -213,10 +278,16 @@ public abstract class HtmlComposite {
 	public HtmlComposite addSvgCircle(final String size, final String fillColor, final String title) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<svg" + makeParam("height", size) + makeParam("width", size) + ">" +
-						"<circle cx=\"9\" cy=\"9\" r=\"8\" stroke=\"#808080\" stroke-width=\"1\" " +
-						makeParam("fill", fillColor) + makeParam("title", title) + "/></svg>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<svg");
+				writeParam(out, "height", size);
+				writeParam(out, "width", size);
+				out.append("><circle cx=\"9\" cy=\"9\" r=\"8\" stroke=\"#808080\" stroke-width=\"1\" ");
+				writeParam(out, "fill", fillColor);
+				writeParam(out, "title", title);
+				out.append("/></svg>");
+				endLine(out);
 			}
 		});
 	}
@@ -224,11 +295,20 @@ public abstract class HtmlComposite {
 	public HtmlComposite addSvgSquare(final String size, final String fillColor, final String title) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<svg" + makeParam("height", size) + makeParam("width", size) + ">" +
-						"<rect " + makeParam("width", size) + makeParam("height", size) + 
-						makeParam("stroke", "#c0c0c0") + makeParam("stroke-width", "1") +
-						makeParam("fill", fillColor) + makeParam("title", title) + "/></svg>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<svg");
+				writeParam(out, "height", size);
+				writeParam(out, "width", size);
+				out.append("><rect ");
+				writeParam(out, "width", size);
+				writeParam(out, "height", size);
+				writeParam(out, "stroke", "#c0c0c0");
+				writeParam(out, "stroke-width", "1");
+				writeParam(out, "fill", fillColor);
+				writeParam(out, "title", title);
+				out.append("/></svg>");
+				endLine(out);
 			}
 		});
 	}
@@ -260,11 +340,17 @@ public abstract class HtmlComposite {
 	public HtmlComposite addPar(final String text, final String cssClass) {
 		HtmlComposite par = add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<p" + makeParam("class", cssClass) + "> " +
-						(text == null ? "" : text));
-				writeChildren(sb);
-				output(sb, "</p>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<p");
+				writeParam(out, "class", cssClass);
+				out.append("> ");
+				if (text != null) {
+					out.append(text);
+				}
+				endLine(out);
+				writeChildren(out);
+				output(out, "</p>");
 			}
 		});
 		par.setCssClass(cssClass);
@@ -280,8 +366,8 @@ public abstract class HtmlComposite {
 	public HtmlComposite addText(final String text) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, text, false);
+			public void writeTo(Appendable out) throws IOException {
+				output(out, text, false);
 			}
 		});
 	}
@@ -296,10 +382,10 @@ public abstract class HtmlComposite {
 	public HtmlComposite addCenter() {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<center>");
-				writeChildren(sb);
-				output(sb, "</center>");
+			public void writeTo(Appendable out) throws IOException {
+				output(out, "<center>");
+				writeChildren(out);
+				output(out, "</center>");
 			}
 		});
 	}
@@ -314,11 +400,14 @@ public abstract class HtmlComposite {
 	public HtmlComposite addList(final Vector<String> vecItems) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<ul>");
-				for (String item : vecItems) 
-					output(sb, indent + "<li>" + item + "</li>");
-				output(sb, "</ul>");
+			public void writeTo(Appendable out) throws IOException {
+				output(out, "<ul>");
+				for (String item : vecItems) {
+					startLine(out);
+					out.append(indent).append("<li>").append(item).append("</li>");
+					endLine(out);
+				}
+				output(out, "</ul>");
 			}
 		});
 	}
@@ -331,10 +420,10 @@ public abstract class HtmlComposite {
 	public HtmlComposite addList() {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<ul>");
-				writeChildren(sb);
-				output(sb, "</ul>");
+			public void writeTo(Appendable out) throws IOException {
+				output(out, "<ul>");
+				writeChildren(out);
+				output(out, "</ul>");
 			}
 		});
 	}
@@ -347,10 +436,10 @@ public abstract class HtmlComposite {
 	public HtmlComposite addListItem() {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<li>");
-				writeChildren(sb);
-				output(sb, "</li>");
+			public void writeTo(Appendable out) throws IOException {
+				output(out, "<li>");
+				writeChildren(out);
+				output(out, "</li>");
 			}
 		});
 	}
@@ -376,10 +465,15 @@ public abstract class HtmlComposite {
 	public HtmlComposite addTable(final String colDefs) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<table>" + (colDefs == null ? "" : colDefs));
-				writeChildren(sb);
-				output(sb, "</table>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<table>");
+				if (colDefs != null) {
+					out.append(colDefs);
+				}
+				endLine(out);
+				writeChildren(out);
+				output(out, "</table>");
 			}
 		});
 	}
@@ -395,12 +489,13 @@ public abstract class HtmlComposite {
 	public HtmlComposite addTableRow(final Vector<String> vecData) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				String row = "<tr>";
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<tr>");
 				for (String item : vecData) 
-					row += item + " ";
-				row += "</tr>";
-				output(sb, row);
+					out.append(item).append(' ');
+				out.append("</tr>");
+				endLine(out);
 			}
 		});
 	}
@@ -431,23 +526,28 @@ public abstract class HtmlComposite {
 	public HtmlComposite addFillTable(final int nCols, final String width) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<table" + makeParam("width", width) + makeParam("class", cssClass) + "><tr>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<table");
+				writeParam(out, "width", width);
+				writeParam(out, "class", cssClass);
+				out.append("><tr>");
+				endLine(out);
 				int nData = 0;
 				for (HtmlComposite child : this.children) {
-					child.write(sb);
+					child.writeTo(out);
 					nData++;
 					if (nData == nCols) {
 						nData = 0;
-						output(sb, "</tr><tr>");
+						output(out, "</tr><tr>");
 					}
 				}
 				// complete the last TR for alignment
 				while (nData < nCols) {
-					output(sb, "<td></td>");
+					output(out, "<td></td>");
 					++nData;
 				}
-				output(sb, "</tr></table>");
+				output(out, "</tr></table>");
 			}
 		});
 	}
@@ -460,10 +560,10 @@ public abstract class HtmlComposite {
 	public HtmlComposite addTableData() {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<td>");
-				writeChildren(sb);
-				output(sb, "</td>");
+			public void writeTo(Appendable out) throws IOException {
+				output(out, "<td>");
+				writeChildren(out);
+				output(out, "</td>");
 			}
 		});
 	}
@@ -474,8 +574,10 @@ public abstract class HtmlComposite {
 	public void addTableData(final String text) {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<td>" + text + "</td>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<td>").append(text).append("</td>");
+				endLine(out);
 			}
 		});
 	}
@@ -490,10 +592,15 @@ public abstract class HtmlComposite {
 	public HtmlComposite addLink(final String url, final String title) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<a" + makeParam("href", url) + makeParam("title", title) + ">");
-				writeChildren(sb);
-				output(sb, "</a>", false);
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<a");
+				writeParam(out, "href", url);
+				writeParam(out, "title", title);
+				out.append('>');
+				endLine(out);
+				writeChildren(out);
+				output(out, "</a>", false);
 			}
 		});
 	}
@@ -508,8 +615,13 @@ public abstract class HtmlComposite {
 	public void addLink(final String url, final String title, final String text) {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<a" + makeParam("href", url) + makeParam("title", title) + ">" + text + "</a>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<a");
+				writeParam(out, "href", url);
+				writeParam(out, "title", title);
+				out.append('>').append(text).append("</a>");
+				endLine(out);
 			}
 		});
 	}
@@ -547,13 +659,15 @@ public abstract class HtmlComposite {
 	public void addLinkExternal(final String url, final String title, final String text, final String rel) {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<a" + 
-					makeParam("href",  url) + 
-					makeParam("title", title) +
-					makeParam("rel",   rel) +
-					makeParam("target", "_blank") + 
-					">" + text + "</a>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<a");
+				writeParam(out, "href", url);
+				writeParam(out, "title", title);
+				writeParam(out, "rel", rel);
+				writeParam(out, "target", "_blank");
+				out.append('>').append(text).append("</a>");
+				endLine(out);
 			}
 		});
 	}
@@ -566,10 +680,14 @@ public abstract class HtmlComposite {
 	public HtmlComposite addAnchor(final String name) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<a" + makeParam("name", name) + ">");
-				writeChildren(sb);
-				output(sb, "</a>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<a");
+				writeParam(out, "name", name);
+				out.append('>');
+				endLine(out);
+				writeChildren(out);
+				output(out, "</a>");
 			}
 		});
 	}
@@ -577,10 +695,15 @@ public abstract class HtmlComposite {
 	public HtmlComposite addForm(final String method, final String action) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<form" + makeParam("method", method) + makeParam("action", action) + ">");
-				writeChildren(sb);
-				output(sb, "</form>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<form");
+				writeParam(out, "method", method);
+				writeParam(out, "action", action);
+				out.append('>');
+				endLine(out);
+				writeChildren(out);
+				output(out, "</form>");
 			}
 		});
 	}
@@ -588,8 +711,13 @@ public abstract class HtmlComposite {
 	public HtmlComposite addInput(final String type, final String name) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<input" + makeParam("type", type) + makeParam("name", name) + "/>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<input");
+				writeParam(out, "type", type);
+				writeParam(out, "name", name);
+				out.append("/>");
+				endLine(out);
 			}
 		});
 	}
@@ -597,8 +725,12 @@ public abstract class HtmlComposite {
 	public HtmlComposite addButton(final String text) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<button" + makeParam("onClick", "submit") + ">" + text + "</button>");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<button");
+				writeParam(out, "onClick", "submit");
+				out.append('>').append(text).append("</button>");
+				endLine(out);
 			}
 		});
 	}
@@ -606,8 +738,13 @@ public abstract class HtmlComposite {
 	public HtmlComposite addMeta(final String name, final String content) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<meta" + makeParam("name", name) + makeParam("content", content) + ">");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<meta");
+				writeParam(out, "name", name);
+				writeParam(out, "content", content);
+				out.append('>');
+				endLine(out);
 			}
 		});
 	}
@@ -620,12 +757,12 @@ public abstract class HtmlComposite {
 	public HtmlComposite addDocumentReady(final String script) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<script>");
-				output(sb, "$(document).ready(function() {");
-				output(sb, script);
-				output(sb, "});");
-				output(sb, "</script>");
+			public void writeTo(Appendable out) throws IOException {
+				output(out, "<script>");
+				output(out, "$(document).ready(function() {");
+				output(out, script);
+				output(out, "});");
+				output(out, "</script>");
 			}
 		});
 	}
@@ -638,10 +775,10 @@ public abstract class HtmlComposite {
 	public HtmlComposite addJavascript(final String sCode) {
 		return add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<script>");
-				output(sb, sCode);
-				output(sb, "</script>");
+			public void writeTo(Appendable out) throws IOException {
+				output(out, "<script>");
+				output(out, sCode);
+				output(out, "</script>");
 			}
 		});		
 	}
@@ -654,8 +791,12 @@ public abstract class HtmlComposite {
 	public void addScript(final String path) {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<script" + makeParam("src", path) + ">" + makeEndTag("script"));
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<script");
+				writeParam(out, "src", path);
+				out.append("></script>");
+				endLine(out);
 			}
 		});
 	}
@@ -668,11 +809,14 @@ public abstract class HtmlComposite {
 	public void addCss(final String path) {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<link" + 
-						makeParam("rel", "stylesheet") + 
-						makeParam("type", "text/css") + 
-						makeParam("href", path) + ">");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<link");
+				writeParam(out, "rel", "stylesheet");
+				writeParam(out, "type", "text/css");
+				writeParam(out, "href", path);
+				out.append('>');
+				endLine(out);
 			}
 		});
 	}
@@ -685,8 +829,10 @@ public abstract class HtmlComposite {
 	public void addComment(final String text) {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				output(sb, "<!-- " + text + " -->");
+			public void writeTo(Appendable out) throws IOException {
+				startLine(out);
+				out.append("<!-- ").append(text).append(" -->");
+				endLine(out);
 			}
 		});
 	}
@@ -697,15 +843,37 @@ public abstract class HtmlComposite {
 	public void addNewLine() {
 		add(new HtmlComposite() {
 			@Override
-			public void write(StringBuffer sb) {
-				sb.append("\n");
+			public void writeTo(Appendable out) throws IOException {
+				out.append('\n');
 			}
 		});
 	}
 	
+	/**
+	 * Writes HTML code to the output, prepending indentation
+	 * and appending a newline.
+	 * 
+	 * @param out the output to write to
+	 * @param text the HTML code to write
+	 * @throws IOException if writing to the output fails
+	 */
+	protected void output(Appendable out, String text) throws IOException {
+		output(out, text, true);
+	}
+	
+	protected void output(Appendable out, String text, boolean addNewLine) throws IOException {
+		if (addNewLine) {
+			startLine(out);
+		}
+		out.append(text);
+		if (addNewLine) {
+			endLine(out);
+		}
+	}
+	
 	/**
 	 * Writes HTML code to the buffer, prepending indentation
-	 * and formatting special characters for HTML.
+	 * and appending a newline.
 	 * 
 	 * @param sb the string buffer to write to
 	 * @param out the HTML code to write
@@ -715,13 +883,50 @@ public abstract class HtmlComposite {
 	}
 	
 	protected void output(StringBuffer sb, String out, boolean addNewLine) {
-		//System.out.println(level + " " + out);
-		for (int i=0; addNewLine && i<level; i++)
-			sb.append(indent);
-		//sb.append(SpecialChars.frToHtml(out));
-		sb.append(out);
-		if (addNewLine) {
-			sb.append("\n");
+		try {
+			output((Appendable) sb, out, addNewLine);
+		} catch (IOException exc) {
+			// Cannot happen when appending to a StringBuffer
+			throw new IllegalStateException(exc);
+		}
+	}
+	
+	/**
+	 * Starts a line of HTML code by writing this component's indentation.
+	 * 
+	 * @param out the output to write to
+	 * @throws IOException if writing to the output fails
+	 */
+	protected void startLine(Appendable out) throws IOException {
+		if (level < indents.length) {
+			out.append(indents[level]);
+		} else {
+			for (int i=0; i<level; i++) {
+				out.append(indent);
+			}
+		}
+	}
+	
+	/**
+	 * Ends a line of HTML code.
+	 * 
+	 * @param out the output to write to
+	 * @throws IOException if writing to the output fails
+	 */
+	protected void endLine(Appendable out) throws IOException {
+		out.append('\n');
+	}
+
+	/**
+	 * Writes this component's children HTML code to the output.
+	 * No effect if this component has no children.
+	 * 
+	 * @param out the output to write to
+	 * @throws IOException if writing to the output fails
+	 */
+	protected void writeChildren(Appendable out) throws IOException {
+		for (int i=0; i<children.size(); ++i) {
+			children.get(i).writeTo(out);
 		}
 	}
 
@@ -732,8 +937,12 @@ public abstract class HtmlComposite {
 	 * @param sb the buffer to write to
 	 */
 	protected void writeChildren(StringBuffer sb) {
-		for (HtmlComposite child : children)
-			child.write(sb);
+		try {
+			writeChildren((Appendable) sb);
+		} catch (IOException exc) {
+			// Cannot happen when appending to a StringBuffer
+			throw new IllegalStateException(exc);
+		}
 	}
 	
 	/**
@@ -765,9 +974,42 @@ public abstract class HtmlComposite {
 		return "</" + name + ">";
 	}
 	
+	/**
+	 * Writes a start tag, like {@link #makeTag(String)} but without building a string.
+	 * 
+	 * @param out the output to write to
+	 * @param name the tag name
+	 * @throws IOException if writing to the output fails
+	 */
+	protected void writeTag(Appendable out, String name) throws IOException {
+		out.append('<').append(name).append('>');
+	}
+	
+	/**
+	 * Writes an end tag, like {@link #makeEndTag(String)} but without building a string.
+	 * 
+	 * @param out the output to write to
+	 * @param name the tag name
+	 * @throws IOException if writing to the output fails
+	 */
+	protected void writeEndTag(Appendable out, String name) throws IOException {
+		out.append("</").append(name).append('>');
+	}
+	
+	/**
+	 * Writes a number, without building a string for a single digit.
+	 */
+	private static void writeDigits(Appendable out, int n) throws IOException {
+		if (n >= 0 && n <= 9) {
+			out.append((char) ('0' + n));
+		} else {
+			out.append(Integer.toString(n));
+		}
+	}
+	
 	/**
 	 * Builds a string representing a parameter as ' arg="value"'.
-	 * A leading space is prepended.
+	 * A leading space is prepended, and the value is escaped.
 	 * 
 	 * @param arg the parameter name
 	 * @param value the parameter value.
@@ -776,6 +1018,23 @@ public abstract class HtmlComposite {
 	protected String makeParam(String arg, String value) {
 		if (value == null)
 			return "";
-		return " " + arg + "=\"" + value + "\"";
+		return " " + arg + "=\"" + HtmlEscaper.escapeAttribute(value) + "\"";
+	}
+	
+	/**
+	 * Writes a parameter as ' arg="value"', like {@link #makeParam(String, String)}
+	 * but without building a string.
+	 * 
+	 * @param out the output to write to
+	 * @param arg the parameter name
+	 * @param value the parameter value. Nothing is written if null.
+	 * @throws IOException if writing to the output fails
+	 */
+	protected void writeParam(Appendable out, String arg, String value) throws IOException {
+		if (value == null)
+			return;
+		out.append(' ').append(arg).append("=\"");
+		HtmlEscaper.escapeAttribute(value, out);
+		out.append('"');
 	}
 }
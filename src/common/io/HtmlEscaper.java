@@ -0,0 +1,219 @@
+package common.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Escaping of text for the HTML text, attribute and script contexts.
+ *
+ * <p>Escaped text is written directly to an {@link Appendable}. Runs of
+ * characters that need no escaping are copied as ranges of the input,
+ * so nothing is allocated when the input needs no escaping.
+ *
+ * <p>An ampersand is kept as is when it starts a character reference,
+ * either named (like <code>&amp;eacute;</code>, as produced by
+ * {@link SpecialChars#frToHtml(String)}) or numeric (like <code>&amp;#233;</code>
+ * or <code>&amp;#xE9;</code>). Named references are recognized by their syntax,
+ * so all HTML5 entity names are accepted. As a consequence, escaping twice
+ * gives the same result as escaping once.
+ *
+ * @author nicz
+ *
+ */
+public class HtmlEscaper {
+
+	/** The longest HTML5 entity name, without ampersand and semicolon. */
+	private static final int maxEntityNameLength = 32;
+
+	/**
+	 * Escapes text to be used as an element's content.
+	 * Escapes &lt;, &gt; and ampersands not starting a character reference.
+	 *
+	 * @param text the text to escape
+	 * @param out  the output to write to
+	 * @throws IOException if writing to the output fails
+	 */
+	public static void escapeText(CharSequence text, Appendable out) throws IOException {
+		escape(text, out, false);
+	}
+
+	/**
+	 * Escapes text to be used as a quoted attribute value.
+	 * Escapes &lt;, &gt;, quotes and ampersands not starting a character reference.
+	 *
+	 * @param value the attribute value to escape
+	 * @param out   the output to write to
+	 * @throws IOException if writing to the output fails
+	 */
+	public static void escapeAttribute(CharSequence value, Appendable out) throws IOException {
+		escape(value, out, true);
+	}
+
+	/**
+	 * Escapes text to be used as a quoted attribute value.
+	 *
+	 * @param value the attribute value to escape
+	 * @return the escaped value, or the value itself if nothing needs escaping
+	 */
+	public static String escapeAttribute(String value) {
+		if (value == null || !needsEscape(value, true)) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(value.length() + 16);
+		try {
+			escape(value, sb, true);
+		} catch (IOException exc) {
+			// Cannot happen when appending to a StringBuilder
+			throw new IllegalStateException(exc);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Escapes text to be used inside a quoted Javascript string in a script element.
+	 * Escapes backslashes, quotes and line terminators, and writes &lt;, &gt; and
+	 * ampersands as unicode escapes, so the text can not close the script element.
+	 *
+	 * @param text the text to escape
+	 * @param out  the output to write to
+	 * @throws IOException if writing to the output fails
+	 */
+	public static void escapeScript(CharSequence text, Appendable out) throws IOException {
+		if (text == null) {
+			out.append(null);
+			return;
+		}
+		int len = text.length();
+		int iCopied = 0;
+		for (int i=0; i<len; ++i) {
+			char c = text.charAt(i);
+			String replacement;
+			switch (c) {
+			case '\\':     replacement = "\\\\";    break;
+			case '\'':     replacement = "\\'";     break;
+			case '"':      replacement = "\\\"";    break;
+			case '\n':     replacement = "\\n";     break;
+			case '\r':     replacement = "\\r";     break;
+			case '<':      replacement = "\\u003C"; break;
+			case '>':      replacement = "\\u003E"; break;
+			case '&':      replacement = "\\u0026"; break;
+			case '\u2028': replacement = "\\u2028"; break;
+			case '\u2029': replacement = "\\u2029"; break;
+			default:       replacement = null;
+			}
+			if (replacement != null) {
+				appendRange(out, text, iCopied, i);
+				out.append(replacement);
+				iCopied = i + 1;
+			}
+		}
+		appendRange(out, text, iCopied, len);
+	}
+
+	/**
+	 * Escapes text for the HTML text or attribute context.
+	 * A null text is written as 'null', like {@link Appendable#append(CharSequence)} does.
+	 */
+	private static void escape(CharSequence text, Appendable out, boolean isAttribute) throws IOException {
+		if (text == null) {
+			out.append(null);
+			return;
+		}
+		int len = text.length();
+		int iCopied = 0;
+		for (int i=0; i<len; ++i) {
+			String replacement = getReplacement(text, i, isAttribute);
+			if (replacement != null) {
+				appendRange(out, text, iCopied, i);
+				out.append(replacement);
+				iCopied = i + 1;
+			}
+		}
+		appendRange(out, text, iCopied, len);
+	}
+
+	/**
+	 * Checks if the specified text contains characters to escape.
+	 */
+	private static boolean needsEscape(CharSequence text, boolean isAttribute) {
+		for (int i=0; i<text.length(); ++i) {
+			if (getReplacement(text, i, isAttribute) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the replacement of the character at the specified index.
+	 * @return the replacement, or null if the character is kept
+	 */
+	private static String getReplacement(CharSequence text, int i, boolean isAttribute) {
+		switch (text.charAt(i)) {
+		case '<':
+			return "&lt;";
+		case '>':
+			return "&gt;";
+		case '&':
+			return (isCharacterReference(text, i) ? null : "&amp;");
+		case '"':
+			return (isAttribute ? "&quot;" : null);
+		case '\'':
+			return (isAttribute ? "&#39;" : null);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if the ampersand at the specified index starts a named or
+	 * numeric character reference terminated by a semicolon.
+	 */
+	private static boolean isCharacterReference(CharSequence text, int iAmp) {
+		int len = text.length();
+		int i = iAmp + 1;
+		if (i < len && text.charAt(i) == '#') {
+			// Numeric reference, decimal or hexadecimal
+			++i;
+			boolean isHex = (i < len && (text.charAt(i) == 'x' || text.charAt(i) == 'X'));
+			if (isHex) {
+				++i;
+			}
+			int iStart = i;
+			while (i < len && i - iStart < 8 && isDigit(text.charAt(i), isHex)) {
+				++i;
+			}
+			return (i > iStart && i < len && text.charAt(i) == ';');
+		}
+
+		// Named reference: a letter followed by letters and digits
+		int iStart = i;
+		while (i < len && i - iStart <= maxEntityNameLength && isNameChar(text.charAt(i), i == iStart)) {
+			++i;
+		}
+		return (i > iStart && i < len && text.charAt(i) == ';');
+	}
+
+	private static boolean isDigit(char c, boolean isHex) {
+		return (c >= '0' && c <= '9') || (isHex && ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')));
+	}
+
+	private static boolean isNameChar(char c, boolean isFirst) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (!isFirst && c >= '0' && c <= '9');
+	}
+
+	/**
+	 * Appends a range of the specified text.
+	 * Avoids creating a sub-sequence when writing a String to a Writer.
+	 */
+	private static void appendRange(Appendable out, CharSequence text, int iStart, int iEnd) throws IOException {
+		if (iStart >= iEnd) {
+			return;
+		}
+		if (out instanceof Writer && text instanceof String) {
+			((Writer) out).write((String) text, iStart, iEnd - iStart);
+		} else {
+			out.append(text, iStart, iEnd);
+		}
+	}
+}
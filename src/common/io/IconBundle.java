@@ -0,0 +1,293 @@
+package common.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bundle of icon image files packed into a single file,
+ * read with one file open instead of one per icon.
+ *
+ * <p>The bundle starts with an index of the icons, sorted by name,
+ * followed by the content of the icon files:
+ * <pre>
+ * int    magic 'ICNB'
+ * int    version
+ * int    number of icons
+ * for each icon:
+ *   short  length of the name in bytes
+ *   byte[] name in UTF-8, without extension
+ *   int    offset of the content, from the end of the index
+ *   int    length of the content
+ * byte[] contents
+ * </pre>
+ *
+ * <p>Bundles are created at build time with {@link #pack(File, File)},
+ * or from the command line:
+ * <pre>
+ * java common.io.IconBundle icons/ icons.bundle
+ * </pre>
+ * A bundle file is memory-mapped by {@link #open(File)}; a bundle in the
+ * classpath is read by {@link #openResource(String)}.
+ * Icon contents are then read from memory without copy.
+ * A bundle may be read by several threads.
+ *
+ * @author nicz
+ *
+ */
+public class IconBundle {
+
+	private static final int MAGIC = 0x49434E42;
+	private static final int VERSION = 1;
+
+	/** The extension of packed icon files */
+	private static final String EXTENSION = ".png";
+
+	/** The icon names, sorted */
+	private final String[] names;
+	private final int[] offsets;
+	private final int[] lengths;
+
+	/** The icon contents, from the end of the index */
+	private final ByteBuffer contents;
+
+	private IconBundle(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not an icon bundle");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported icon bundle version " + version);
+		}
+		int nIcons = buffer.getInt();
+		names = new String[nIcons];
+		offsets = new int[nIcons];
+		lengths = new int[nIcons];
+		for (int i=0; i<nIcons; ++i) {
+			byte[] name = new byte[buffer.getShort() & 0xffff];
+			buffer.get(name);
+			names[i] = new String(name, StandardCharsets.UTF_8);
+			offsets[i] = buffer.getInt();
+			lengths[i] = buffer.getInt();
+		}
+		contents = buffer.slice();
+		for (int i=0; i<nIcons; ++i) {
+			if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] > contents.limit() - lengths[i]) {
+				throw new IOException("Truncated icon bundle, at icon " + names[i]);
+			}
+		}
+	}
+
+	/**
+	 * Opens a bundle file, by mapping it in memory.
+	 *
+	 * @param file the bundle file
+	 * @return the opened bundle
+	 * @throws IOException if the file can not be read or is not a bundle
+	 */
+	public static IconBundle open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return new IconBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Opens a bundle from the classpath.
+	 *
+	 * @param sResource the absolute resource name, like '/icons.bundle'
+	 * @return the opened bundle, or null if the resource does not exist
+	 * @throws IOException if the resource can not be read or is not a bundle
+	 */
+	public static IconBundle openResource(String sResource) throws IOException {
+		InputStream stream = IconBundle.class.getResourceAsStream(sResource);
+		if (stream == null) {
+			return null;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64*1024);
+			byte[] buffer = new byte[8192];
+			int nRead;
+			while ((nRead = stream.read(buffer)) > 0) {
+				bytes.write(buffer, 0, nRead);
+			}
+			return new IconBundle(ByteBuffer.wrap(bytes.toByteArray()));
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * @return the names of the bundled icons, sorted
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+
+	/**
+	 * @param iconName the icon name, without extension
+	 * @return true if the icon is in the bundle
+	 */
+	public boolean contains(String iconName) {
+		return Arrays.binarySearch(names, iconName) >= 0;
+	}
+
+	/**
+	 * Gets the content of an icon file as a stream, reading from the bundle memory.
+	 *
+	 * @param iconName the icon name, without extension
+	 * @return the stream of the icon file, or null if the icon is not in the bundle
+	 */
+	public InputStream getStream(String iconName) {
+		int index = Arrays.binarySearch(names, iconName);
+		if (index < 0) {
+			return null;
+		}
+		ByteBuffer content = contents.duplicate();
+		content.position(offsets[index]);
+		content.limit(offsets[index] + lengths[index]);
+		return new BufferInputStream(content);
+	}
+
+	/**
+	 * Gets the length of an icon file.
+	 *
+	 * @param iconName the icon name, without extension
+	 * @return the length in bytes, or -1 if the icon is not in the bundle
+	 */
+	public int getLength(String iconName) {
+		int index = Arrays.binarySearch(names, iconName);
+		return (index < 0 ? -1 : lengths[index]);
+	}
+
+	/**
+	 * Packs the icon files of a directory into a bundle file.
+	 *
+	 * @param dir the directory of the icon files
+	 * @param bundleFile the bundle file to write
+	 * @return the number of packed icons
+	 * @throws IOException if a file can not be read, or the bundle can not be written
+	 */
+	public static int pack(File dir, File bundleFile) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Not a directory: " + dir.getPath());
+		}
+		List<String> listNames = new ArrayList<String>();
+		for (File file : files) {
+			String fileName = file.getName();
+			if (file.isFile() && fileName.endsWith(EXTENSION)) {
+				listNames.add(fileName.substring(0, fileName.length() - EXTENSION.length()));
+			}
+		}
+		// Sorted as by String.compareTo, for the binary search of names
+		Collections.sort(listNames);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bundleFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(listNames.size());
+			long offset = 0;
+			for (String name : listNames) {
+				long length = new File(dir, name + EXTENSION).length();
+				if (offset + length > Integer.MAX_VALUE) {
+					throw new IOException("Icon bundle too large, at icon " + name);
+				}
+				byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+				out.writeShort(nameBytes.length);
+				out.write(nameBytes);
+				out.writeInt((int) offset);
+				out.writeInt((int) length);
+				offset += length;
+			}
+			byte[] buffer = new byte[8192];
+			for (String name : listNames) {
+				FileInputStream in = new FileInputStream(new File(dir, name + EXTENSION));
+				try {
+					int nRead;
+					while ((nRead = in.read(buffer)) > 0) {
+						out.write(buffer, 0, nRead);
+					}
+				} finally {
+					in.close();
+				}
+			}
+		} finally {
+			out.close();
+		}
+		return listNames.size();
+	}
+
+	/**
+	 * Packs a directory of icon files, from the command line.
+	 *
+	 * @param args the icon directory and the bundle file
+	 * @throws IOException if the bundle can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java common.io.IconBundle <icon directory> <bundle file>");
+			System.exit(1);
+		}
+		int nIcons = pack(new File(args[0]), new File(args[1]));
+		System.out.println("Packed " + nIcons + " icons into " + args[1]);
+	}
+
+	/**
+	 * An input stream reading a byte buffer.
+	 */
+	private static class BufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return (buffer.hasRemaining() ? buffer.get() & 0xff : -1);
+		}
+
+		@Override
+		public int read(byte[] bytes, int iOffset, int nBytes) {
+			if (nBytes == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int nRead = Math.min(nBytes, buffer.remaining());
+			buffer.get(bytes, iOffset, nRead);
+			return nRead;
+		}
+
+		@Override
+		public long skip(long nBytes) {
+			int nSkipped = (int) Math.max(0, Math.min(nBytes, buffer.remaining()));
+			buffer.position(buffer.position() + nSkipped);
+			return nSkipped;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -1,55 +1,78 @@
 package common.io;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 
 /**
  * Conversion of special characters from French to Html and LaTeX.
  * 
+ * <p>The conversion tables are built once by {@link #init()}.
+ * Conversions are done in a single pass over the input string,
+ * which is returned unchanged if it contains no special characters.
+ * 
  * @author nicz
  *
  */
 public class SpecialChars {
-	private static Map<String, String> htmlChars;
-	private static Map<String, String> latexChars;
+	/** The HTML entities of special characters, indexed by character. */
+	private static String[] htmlChars;
+	
+	/** The LaTeX codes of special characters, indexed by character. */
+	private static String[] latexChars;
+	
+	/** The root of the HTML entities trie, used to convert entities back to characters. */
+	private static EntityNode htmlEntities;
 	
 	/**
-	 * Initialize the maps of special character conversions.
+	 * Initialize the tables of special character conversions.
 	 */
 	public static void init() {
-		htmlChars = new HashMap<String, String>();
-		htmlChars.put("", "&agrave;");
-		htmlChars.put("", "&acirc;");
-		htmlChars.put("", "&auml;");
-		htmlChars.put("", "&ccedil;");
-		htmlChars.put("", "&eacute;");
-		htmlChars.put("", "&egrave;");
-		htmlChars.put("", "&ecirc;");
-		htmlChars.put("", "&euml;");
-		htmlChars.put("", "&icirc;");
-		htmlChars.put("", "&iuml;");
-		htmlChars.put("", "&ocirc;");
-		htmlChars.put("", "&ouml;");
-		htmlChars.put("", "&ugrave;");
-		htmlChars.put("", "&ucirc;");
+		htmlChars = new String[256];
+		htmlEntities = new EntityNode();
+		addHtmlChar('\u00e0', "&agrave;");
+		addHtmlChar('\u00e2', "&acirc;");
+		addHtmlChar('\u00e4', "&auml;");
+		addHtmlChar('\u00e7', "&ccedil;");
+		addHtmlChar('\u00e9', "&eacute;");
+		addHtmlChar('\u00e8', "&egrave;");
+		addHtmlChar('\u00ea', "&ecirc;");
+		addHtmlChar('\u00eb', "&euml;");
+		addHtmlChar('\u00ee', "&icirc;");
+		addHtmlChar('\u00ef', "&iuml;");
+		addHtmlChar('\u00f4', "&ocirc;");
+		addHtmlChar('\u00f6', "&ouml;");
+		addHtmlChar('\u00f9', "&ugrave;");
+		addHtmlChar('\u00fb', "&ucirc;");
 		
-		latexChars = new HashMap<String, String>();
-		latexChars.put("", "\\\\`a");
-		latexChars.put("", "\\\\^a");
-		latexChars.put("", "\\\\\"a");
-		latexChars.put("", "\\\\c{c}");
-		latexChars.put("", "\\\\'e");
-		latexChars.put("", "\\\\`e");
-		latexChars.put("", "\\\\^e");
-		latexChars.put("", "\\\\\"e");
-		latexChars.put("", "\\\\^i");
-		latexChars.put("", "\\\\^o");
-		latexChars.put("", "\\\\\"o");
-		latexChars.put("", "\\\\`u");
-		latexChars.put("", "\\\\^u");
-		latexChars.put("%", "\\\\%");
+		latexChars = new String[256];
+		latexChars['\u00e0'] = "\\`a";
+		latexChars['\u00e2'] = "\\^a";
+		latexChars['\u00e4'] = "\\\"a";
+		latexChars['\u00e7'] = "\\c{c}";
+		latexChars['\u00e9'] = "\\'e";
+		latexChars['\u00e8'] = "\\`e";
+		latexChars['\u00ea'] = "\\^e";
+		latexChars['\u00eb'] = "\\\"e";
+		latexChars['\u00ee'] = "\\^i";
+		latexChars['\u00f4'] = "\\^o";
+		latexChars['\u00f6'] = "\\\"o";
+		latexChars['\u00f9'] = "\\`u";
+		latexChars['\u00fb'] = "\\^u";
+		latexChars['%'] = "\\%";
+	}
+	
+	/**
+	 * Adds a conversion between a French character and an HTML entity.
+	 * @param c       the French character
+	 * @param entity  the HTML entity, including leading '&amp;' and trailing ';'
+	 */
+	private static void addHtmlChar(char c, String entity) {
+		htmlChars[c] = entity;
+		EntityNode node = htmlEntities;
+		for (int i=0; i<entity.length(); ++i) {
+			node = node.addChild(entity.charAt(i));
+		}
+		node.value = c;
+		node.isEntity = true;
 	}
 	
 	/**
@@ -58,12 +81,32 @@ public class SpecialChars {
 	 * @return the converted string
 	 */
 	public static String htmlToFr(String s) {
-		for (String acc : htmlChars.keySet()) {
-			Pattern p = Pattern.compile(htmlChars.get(acc));
-			Matcher m = p.matcher(s);
-			s = m.replaceAll(acc);
+		StringBuilder sb = null;
+		int len = s.length();
+		int iCopied = 0;
+		int i = s.indexOf('&');
+		while (i >= 0) {
+			// Walk the trie until an entity is complete or no entity matches
+			EntityNode node = htmlEntities;
+			int j = i;
+			while (node != null && !node.isEntity && j < len) {
+				node = node.getChild(s.charAt(j++));
+			}
+			if (node != null && node.isEntity) {
+				if (sb == null) {
+					sb = new StringBuilder(len);
+				}
+				sb.append(s, iCopied, i).append(node.value);
+				iCopied = j;
+				i = s.indexOf('&', j);
+			} else {
+				i = s.indexOf('&', i + 1);
+			}
 		}
-		return s;
+		if (sb == null) {
+			return s;
+		}
+		return sb.append(s, iCopied, len).toString();
 	}
 
 	/**
@@ -72,12 +115,7 @@ public class SpecialChars {
 	 * @return the converted string
 	 */
 	public static String frToHtml(String s) {
-		for (String acc : htmlChars.keySet()) {
-			Pattern p = Pattern.compile(acc);
-			Matcher m = p.matcher(s); 
-			s = m.replaceAll(htmlChars.get(acc));
-		}
-		return s;
+		return convert(s, htmlChars);
 	}
 
 	/**
@@ -86,12 +124,90 @@ public class SpecialChars {
 	 * @return the converted string
 	 */
 	public static String frToTex(String s) {
-		for (String acc : latexChars.keySet()) {
-			Pattern p = Pattern.compile(acc);
-			Matcher m = p.matcher(s); 
-			s = m.replaceAll(latexChars.get(acc));
+		return convert(s, latexChars);
+	}
+	
+	/**
+	 * Convert the input's special chars using the specified table.
+	 * @param s      the input string
+	 * @param table  the conversions, indexed by character
+	 * @return the converted string, or the input itself if nothing was converted
+	 */
+	private static String convert(String s, String[] table) {
+		int len = s.length();
+		int i = 0;
+		while (i < len && getConversion(table, s.charAt(i)) == null) {
+			++i;
+		}
+		if (i == len) {
+			return s;
+		}
+		
+		StringBuilder sb = new StringBuilder(len + 16);
+		sb.append(s, 0, i);
+		for (; i<len; ++i) {
+			char c = s.charAt(i);
+			String conversion = getConversion(table, c);
+			if (conversion == null) {
+				sb.append(c);
+			} else {
+				sb.append(conversion);
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Get the conversion of the specified character.
+	 * @return the conversion, or null if the character is not converted
+	 */
+	private static String getConversion(String[] table, char c) {
+		return (c < table.length ? table[c] : null);
+	}
+	
+	/**
+	 * A node in the trie of HTML entities.
+	 * Entities are short and few, so children are kept in small arrays.
+	 */
+	private static class EntityNode {
+		private char[] keys = new char[0];
+		private EntityNode[] children = new EntityNode[0];
+		
+		/** True if the path to this node is a complete entity. */
+		private boolean isEntity = false;
+		
+		/** The character of the complete entity. */
+		private char value;
+		
+		/**
+		 * Get the child node for the specified character.
+		 * @return the child node, or null if none
+		 */
+		EntityNode getChild(char c) {
+			for (int i=0; i<keys.length; ++i) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * Get or create the child node for the specified character.
+		 * @return the child node
+		 */
+		EntityNode addChild(char c) {
+			EntityNode child = getChild(c);
+			if (child == null) {
+				child = new EntityNode();
+				int n = keys.length;
+				keys = Arrays.copyOf(keys, n + 1);
+				children = Arrays.copyOf(children, n + 1);
+				keys[n] = c;
+				children[n] = child;
+			}
+			return child;
 		}
-		return s;
 	}
 	
 	/**
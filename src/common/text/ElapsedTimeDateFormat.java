@@ -40,26 +40,25 @@ public class ElapsedTimeDateFormat extends DateFormat {
 	public StringBuffer format(Date date, StringBuffer toAppendTo,
 			FieldPosition fieldPosition) {
 		
-		Date now = new Date();
-		long diffSecs = (now.getTime() - date.getTime())/1000l;
+		long diffSecs = (System.currentTimeMillis() - date.getTime())/1000l;
 		
 		if (diffSecs > 365*24*3600) {
 			toAppendTo.append("il y a plus d'un an");
 		} else if (diffSecs > 30*24*3600) {
 			long nMonths = diffSecs / (30*24*3600l);
-			toAppendTo.append(getHumanTimeDiff(eTimeRange.MONTH, nMonths));
+			appendHumanTimeDiff(toAppendTo, eTimeRange.MONTH, nMonths);
 		} else if (diffSecs > 7*24*3600) {
 			long nWeeks = diffSecs / (7*24*3600l);
-			toAppendTo.append(getHumanTimeDiff(eTimeRange.WEEKS, nWeeks));
+			appendHumanTimeDiff(toAppendTo, eTimeRange.WEEKS, nWeeks);
 		} else if (diffSecs > 24*3600) {
 			long nDays = diffSecs / (24*3600l);
-			toAppendTo.append(getHumanTimeDiff(eTimeRange.DAYS, nDays));
+			appendHumanTimeDiff(toAppendTo, eTimeRange.DAYS, nDays);
 		} else if (diffSecs > 3600) {
 			long nHours = diffSecs / 3600l;
-			toAppendTo.append(getHumanTimeDiff(eTimeRange.HOURS, nHours));
+			appendHumanTimeDiff(toAppendTo, eTimeRange.HOURS, nHours);
 		} else if (diffSecs > 60) {
 			long nMins = diffSecs / 60l;
-			toAppendTo.append(getHumanTimeDiff(eTimeRange.MINUTES, nMins));
+			appendHumanTimeDiff(toAppendTo, eTimeRange.MINUTES, nMins);
 		} else {
 			toAppendTo.append("à l'instant");
 		}
@@ -72,10 +71,11 @@ public class ElapsedTimeDateFormat extends DateFormat {
 		return null;
 	}
 	
-	private String getHumanTimeDiff(eTimeRange timeRange, long amount) {
+	private void appendHumanTimeDiff(StringBuffer toAppendTo, eTimeRange timeRange, long amount) {
 		if (amount == 1) 
-			return "il y a 1 " + timeRange.getSingular();
-		return "il y a " + amount + " " + timeRange.getPlural();
+			toAppendTo.append("il y a 1 ").append(timeRange.getSingular());
+		else
+			toAppendTo.append("il y a ").append(amount).append(' ').append(timeRange.getPlural());
 	}
 
 }
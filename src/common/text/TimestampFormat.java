@@ -0,0 +1,239 @@
+package common.text;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Thread-safe formatter of timestamps like '2026.10.17 14:05:09'
+ * (pattern yyyy.MM.dd HH:mm:ss), for logs and generated files.
+ *
+ * <p>The last formatted timestamp is cached and shared by all threads,
+ * so formatting a time in the same second as the previous one
+ * returns the same string without allocating.
+ * The date and time fields are only computed from a calendar
+ * when the minute changes; within the same minute, only the seconds
+ * digits are rendered again, in a reused per-thread buffer.
+ * Appending to a string builder within the same minute allocates nothing.
+ *
+ * <p>Years must be between 0 and 9999.
+ *
+ * <p>{@link #main(String[])} compares this formatter with SimpleDateFormat.
+ *
+ * @author nicz
+ *
+ */
+public class TimestampFormat {
+
+	/** The length of a formatted timestamp */
+	private static final int LENGTH = 19;
+
+	/** The length of a formatted timestamp without the seconds */
+	private static final int MINUTE_LENGTH = 17;
+
+	/** Buffers to render timestamps, by thread */
+	private static final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+		@Override
+		protected char[] initialValue() {
+			return new char[LENGTH];
+		}
+	};
+
+	private final TimeZone timeZone;
+
+	/** The last formatted timestamp, replaced as a whole so that threads never see partial updates */
+	private volatile Timestamp last;
+
+	/**
+	 * Constructor with the default time zone.
+	 */
+	public TimestampFormat() {
+		this(TimeZone.getDefault());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param timeZone the time zone of formatted timestamps
+	 */
+	public TimestampFormat(TimeZone timeZone) {
+		this.timeZone = (TimeZone) timeZone.clone();
+		this.last = render(System.currentTimeMillis());
+	}
+
+	/**
+	 * Formats the current time.
+	 *
+	 * @return the formatted timestamp
+	 */
+	public String format() {
+		return format(System.currentTimeMillis());
+	}
+
+	/**
+	 * Formats the given date.
+	 *
+	 * @param date the date to format
+	 * @return the formatted timestamp
+	 */
+	public String format(Date date) {
+		return format(date.getTime());
+	}
+
+	/**
+	 * Formats the given time.
+	 *
+	 * @param millis the time in milliseconds since the epoch
+	 * @return the formatted timestamp
+	 */
+	public String format(long millis) {
+		Timestamp timestamp = last;
+		long second = Math.floorDiv(millis, 1000L);
+		if (second == timestamp.second) {
+			return timestamp.text;
+		}
+
+		if (timestamp.isSameMinute(millis)) {
+			timestamp = timestamp.withSecond(second, timestamp.getSecondOfMinute(millis));
+		} else {
+			timestamp = render(millis);
+		}
+		last = timestamp;
+		return timestamp.text;
+	}
+
+	/**
+	 * Appends the given time, formatted, to a string builder.
+	 * Nothing is allocated if the time is in the same minute as the last formatted time.
+	 *
+	 * @param millis the time in milliseconds since the epoch
+	 * @param sb the string builder to append to
+	 */
+	public void format(long millis, StringBuilder sb) {
+		Timestamp timestamp = last;
+		if (!timestamp.isSameMinute(millis)) {
+			timestamp = render(millis);
+			last = timestamp;
+		}
+		int secondOfMinute = timestamp.getSecondOfMinute(millis);
+		sb.append(timestamp.minute);
+		sb.append((char) ('0' + secondOfMinute / 10));
+		sb.append((char) ('0' + secondOfMinute % 10));
+	}
+
+	/**
+	 * Renders all fields of a timestamp.
+	 */
+	private Timestamp render(long millis) {
+		Calendar calendar = new GregorianCalendar(timeZone);
+		calendar.setTimeInMillis(millis);
+
+		char[] chars = buffers.get();
+		int year = calendar.get(Calendar.YEAR);
+		setDigits(chars, 0, year / 100);
+		setDigits(chars, 2, year % 100);
+		chars[4] = '.';
+		setDigits(chars, 5, calendar.get(Calendar.MONTH) + 1);
+		chars[7] = '.';
+		setDigits(chars, 8, calendar.get(Calendar.DAY_OF_MONTH));
+		chars[10] = ' ';
+		setDigits(chars, 11, calendar.get(Calendar.HOUR_OF_DAY));
+		chars[13] = ':';
+		setDigits(chars, 14, calendar.get(Calendar.MINUTE));
+		chars[16] = ':';
+		setDigits(chars, 17, calendar.get(Calendar.SECOND));
+
+		long minuteStart = millis - 1000L*calendar.get(Calendar.SECOND) - calendar.get(Calendar.MILLISECOND);
+		return new Timestamp(Math.floorDiv(millis, 1000L), minuteStart,
+				new String(chars, 0, MINUTE_LENGTH), new String(chars, 0, LENGTH));
+	}
+
+	/**
+	 * Sets two digits of a value between 0 and 99.
+	 */
+	private static void setDigits(char[] chars, int index, int value) {
+		chars[index]   = (char) ('0' + value / 10);
+		chars[index+1] = (char) ('0' + value % 10);
+	}
+
+	/**
+	 * Compares this formatter with SimpleDateFormat on 8 million times
+	 * in four time zones, including daylight saving time changes.
+	 * Prints the number of differences.
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		String[] zones = { "UTC", "Europe/Zurich", "America/New_York", "Australia/Lord_Howe" };
+		// From 2026.03.01 to early April, across the daylight saving time changes
+		// of America, Europe and Lord Howe Island
+		long start = 1772323200000L;
+		int nTimes = 2000000;
+		int nErrors = 0;
+		Random random = new Random(17);
+		for (String zone : zones) {
+			TimeZone timeZone = TimeZone.getTimeZone(zone);
+			TimestampFormat format = new TimestampFormat(timeZone);
+			SimpleDateFormat expectedFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss");
+			expectedFormat.setTimeZone(timeZone);
+			StringBuilder sb = new StringBuilder(LENGTH);
+			long millis = start;
+			for (int i=0; i<nTimes; ++i) {
+				// Mostly increasing times, like logs, with some jumps back and forth
+				millis += (i % 1000 == 0 ? random.nextInt(7200000) - 3600000 : random.nextInt(3200));
+				String sExpected = expectedFormat.format(new Date(millis));
+				sb.setLength(0);
+				format.format(millis, sb);
+				if (!sExpected.equals(format.format(millis)) || !sExpected.contentEquals(sb)) {
+					if (nErrors < 10) {
+						System.out.println("Difference in " + zone + " at " + millis + ": expected "
+								+ sExpected + ", got " + format.format(millis) + " and " + sb);
+					}
+					++nErrors;
+				}
+			}
+		}
+		System.out.println("Compared " + zones.length*nTimes + " timestamps: " + nErrors + " differences");
+	}
+
+	/**
+	 * An immutable formatted timestamp.
+	 */
+	private static class Timestamp {
+		/** The formatted second, since the epoch */
+		final long second;
+		/** The start of the formatted minute, in milliseconds since the epoch */
+		final long minuteStart;
+		/** The formatted minute, without the seconds */
+		final String minute;
+		final String text;
+
+		Timestamp(long second, long minuteStart, String minute, String text) {
+			this.second = second;
+			this.minuteStart = minuteStart;
+			this.minute = minute;
+			this.text = text;
+		}
+
+		boolean isSameMinute(long millis) {
+			return millis >= minuteStart && millis < minuteStart + 60000L;
+		}
+
+		int getSecondOfMinute(long millis) {
+			return (int) ((millis - minuteStart) / 1000L);
+		}
+
+		/**
+		 * @return a timestamp in the same minute, with another second.
+		 */
+		Timestamp withSecond(long second, int secondOfMinute) {
+			char[] chars = buffers.get();
+			minute.getChars(0, MINUTE_LENGTH, chars, 0);
+			setDigits(chars, MINUTE_LENGTH, secondOfMinute);
+			return new Timestamp(second, minuteStart, minute, new String(chars, 0, LENGTH));
+		}
+	}
+}
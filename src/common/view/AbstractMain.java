@@ -1,5 +1,7 @@
 package common.view;
 
+import java.util.Collection;
+
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
 
@@ -80,11 +82,26 @@ public abstract class AbstractMain {
 	 */
 	protected abstract void onTerminate();
 
+	/**
+	 * Gets the icons to decode in background threads at startup,
+	 * before the widgets are built.
+	 * Override to preload the icons of toolbars and buttons.
+	 * 
+	 * @return the names of the icons to preload, or null to load icons on first use
+	 */
+	protected Collection<String> getPreloadedIcons() {
+		return null;
+	}
+
 	/**
 	 * Initializes the application and builds the widgets.
 	 */
 	protected void init() {
 		IconManager.init(display);
+		Collection<String> preloadedIcons = getPreloadedIcons();
+		if (preloadedIcons != null) {
+			IconManager.preloadIcons(preloadedIcons);
+		}
 		MessageBox.init(shell, appName);
 		SpecialChars.init();
 		
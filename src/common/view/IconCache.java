@@ -0,0 +1,380 @@
+package common.view;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+
+import common.base.LongObjectMap;
+
+/**
+ * A cache of icon images, bounded in number of images and in native memory,
+ * evicting the least recently used images.
+ *
+ * <p>Images are cached either by an object key, like an icon name,
+ * or by a primitive long key, like a packed color and size, which is
+ * looked up without allocation. Both kinds share the same limits and
+ * the same order of use.
+ *
+ * <p>The native memory of an image is estimated as 4 bytes per pixel,
+ * at the zoom of the display, see {@link #setZoom(int)}.
+ * Images used by widgets are reference counted with {@link #acquire(Image)}
+ * and {@link #release(Image)}: an evicted image is disposed at once if
+ * it is not used, or when its last user releases it otherwise.
+ * An image which was never acquired must not be used after it is evicted.
+ * A pinned image, see {@link #pin(Image)}, is never disposed before
+ * {@link #disposeAll()}, even if evicted.
+ *
+ * <p>Images are disposed by the calling thread, so the methods which may
+ * dispose images must be called by the UI thread of the display.
+ *
+ * @author nicz
+ *
+ */
+class IconCache {
+
+	private int maxIcons;
+	private long maxBytes;
+
+	/** The zoom of the display in percent, at which images are drawn */
+	private int zoom;
+
+	/** The cached entries with an object key */
+	private final Map<Object, Entry> mapEntries;
+
+	/** The cached entries with a long key */
+	private final LongObjectMap<Entry> mapLongEntries;
+
+	/** The cached and evicted entries still in use, by image */
+	private final Map<Image, Entry> mapImages;
+
+	/**
+	 * The head of the circular list of cached entries, from the
+	 * least recently used (next) to the most recently used (previous).
+	 */
+	private final Entry lru;
+
+	private int nEntries;
+	private long nBytes;
+	private long nHits;
+	private long nMisses;
+	private long nEvictions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxIcons the maximum number of cached images
+	 * @param maxBytes the maximum native memory of cached images, in bytes
+	 */
+	IconCache(int maxIcons, long maxBytes) {
+		this.maxIcons = maxIcons;
+		this.maxBytes = maxBytes;
+		this.zoom = 100;
+		this.mapEntries = new HashMap<Object, Entry>();
+		this.mapLongEntries = new LongObjectMap<Entry>();
+		this.mapImages = new IdentityHashMap<Image, Entry>();
+		this.lru = new Entry(null, 0L, null, 0);
+		lru.next = lru;
+		lru.previous = lru;
+	}
+
+	/**
+	 * Sets the limits of the cache, evicting images if needed.
+	 *
+	 * @param maxIcons the maximum number of cached images
+	 * @param maxBytes the maximum native memory of cached images, in bytes
+	 */
+	synchronized void setLimits(int maxIcons, long maxBytes) {
+		this.maxIcons = maxIcons;
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	/**
+	 * Sets the zoom of the display, at which the images added next are counted.
+	 *
+	 * @param zoom the zoom in percent, like 200 on a HiDPI display
+	 */
+	synchronized void setZoom(int zoom) {
+		this.zoom = Math.max(100, zoom);
+	}
+
+	/**
+	 * Gets a cached image, which becomes the most recently used.
+	 *
+	 * @param key the icon key
+	 * @return the image, or null if not cached
+	 */
+	synchronized Image get(Object key) {
+		return use(mapEntries.get(key));
+	}
+
+	/**
+	 * Gets a cached image, which becomes the most recently used.
+	 *
+	 * @param key the icon key
+	 * @return the image, or null if not cached
+	 */
+	synchronized Image get(long key) {
+		return use(mapLongEntries.get(key));
+	}
+
+	/**
+	 * Checks if an image is cached, without changing the access order
+	 * nor counting a hit or a miss.
+	 *
+	 * @param key the icon key
+	 * @return true if the image is cached
+	 */
+	synchronized boolean contains(Object key) {
+		return mapEntries.containsKey(key);
+	}
+
+	/**
+	 * Adds an image to the cache, evicting the least recently used images
+	 * if the limits are exceeded. The added image itself is never evicted here.
+	 *
+	 * @param key the icon key
+	 * @param image the image to cache
+	 */
+	synchronized void put(Object key, Image image) {
+		Entry previous = mapEntries.remove(key);
+		if (previous != null) {
+			remove(previous);
+		}
+		Entry entry = new Entry(key, 0L, image, getBytes(image, zoom));
+		mapEntries.put(key, entry);
+		add(entry);
+	}
+
+	/**
+	 * Adds an image to the cache, evicting the least recently used images
+	 * if the limits are exceeded. The added image itself is never evicted here.
+	 *
+	 * @param key the icon key
+	 * @param image the image to cache
+	 */
+	synchronized void put(long key, Image image) {
+		Entry previous = mapLongEntries.remove(key);
+		if (previous != null) {
+			remove(previous);
+		}
+		Entry entry = new Entry(null, key, image, getBytes(image, zoom));
+		mapLongEntries.put(key, entry);
+		add(entry);
+	}
+
+	/**
+	 * Registers a user of an image, which is not disposed until released.
+	 * No effect if the image is not cached.
+	 *
+	 * @param image the used image
+	 */
+	synchronized void acquire(Image image) {
+		Entry entry = mapImages.get(image);
+		if (entry != null) {
+			++entry.nUsers;
+		}
+	}
+
+	/**
+	 * Keeps an image from being disposed until all images are disposed,
+	 * for images whose users are not known.
+	 * No effect if the image is not cached.
+	 *
+	 * @param image the image to keep
+	 */
+	synchronized void pin(Image image) {
+		Entry entry = mapImages.get(image);
+		if (entry != null) {
+			entry.isPinned = true;
+		}
+	}
+
+	/**
+	 * Unregisters a user of an image, disposing the image if it was
+	 * evicted and has no other user.
+	 *
+	 * @param image the image no more used
+	 */
+	synchronized void release(Image image) {
+		Entry entry = mapImages.get(image);
+		if (entry != null && entry.nUsers > 0) {
+			--entry.nUsers;
+			if (entry.nUsers == 0 && entry.isEvicted && !entry.isPinned) {
+				mapImages.remove(image);
+				dispose(image);
+			}
+		}
+	}
+
+	/**
+	 * Disposes all cached and evicted images, even if still in use.
+	 */
+	synchronized void disposeAll() {
+		for (Image image : mapImages.keySet()) {
+			dispose(image);
+		}
+		mapImages.clear();
+		mapEntries.clear();
+		mapLongEntries.clear();
+		lru.next = lru;
+		lru.previous = lru;
+		nEntries = 0;
+		nBytes = 0;
+	}
+
+	/**
+	 * @return the number of cached images
+	 */
+	synchronized int getSize() {
+		return nEntries;
+	}
+
+	/**
+	 * @return the estimated native memory of cached images, in bytes
+	 */
+	synchronized long getBytes() {
+		return nBytes;
+	}
+
+	/**
+	 * @return the number of evicted images still in use or pinned
+	 */
+	synchronized int getRetainedSize() {
+		return mapImages.size() - nEntries;
+	}
+
+	synchronized long getHits() {
+		return nHits;
+	}
+
+	synchronized long getMisses() {
+		return nMisses;
+	}
+
+	synchronized long getEvictions() {
+		return nEvictions;
+	}
+
+	/**
+	 * Counts a hit or a miss, and moves a found entry to the most recently used.
+	 */
+	private Image use(Entry entry) {
+		if (entry == null) {
+			++nMisses;
+			return null;
+		}
+		++nHits;
+		unlink(entry);
+		link(entry);
+		return entry.image;
+	}
+
+	/**
+	 * Adds an indexed entry as the most recently used, and evicts entries if needed.
+	 */
+	private void add(Entry entry) {
+		link(entry);
+		mapImages.put(entry.image, entry);
+		++nEntries;
+		nBytes += entry.nBytes;
+		evict();
+	}
+
+	/**
+	 * Removes an entry, already removed from its index, from the cached entries.
+	 */
+	private void remove(Entry entry) {
+		unlink(entry);
+		--nEntries;
+		retire(entry);
+	}
+
+	/**
+	 * Evicts the least recently used images while the limits are exceeded,
+	 * keeping at least the most recently used image.
+	 */
+	private void evict() {
+		while ((nEntries > maxIcons || nBytes > maxBytes) && nEntries > 1) {
+			Entry entry = lru.next;
+			if (entry.key != null) {
+				mapEntries.remove(entry.key);
+			} else {
+				mapLongEntries.remove(entry.longKey);
+			}
+			++nEvictions;
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Disposes the image of a removed entry if it is not in use nor pinned.
+	 */
+	private void retire(Entry entry) {
+		nBytes -= entry.nBytes;
+		entry.isEvicted = true;
+		if (entry.nUsers == 0 && !entry.isPinned) {
+			mapImages.remove(entry.image);
+			dispose(entry.image);
+		}
+	}
+
+	private void link(Entry entry) {
+		entry.previous = lru.previous;
+		entry.next = lru;
+		lru.previous.next = entry;
+		lru.previous = entry;
+	}
+
+	private static void unlink(Entry entry) {
+		entry.previous.next = entry.next;
+		entry.next.previous = entry.previous;
+		entry.previous = null;
+		entry.next = null;
+	}
+
+	private static void dispose(Image image) {
+		if (!image.isDisposed()) {
+			image.dispose();
+		}
+	}
+
+	/**
+	 * Estimates the native memory of an image, from its size in points.
+	 */
+	private static long getBytes(Image image, int zoom) {
+		Rectangle bounds = image.getBounds();
+		long width = Math.max(1, bounds.width * zoom / 100);
+		long height = Math.max(1, bounds.height * zoom / 100);
+		return 4L * width * height;
+	}
+
+	/**
+	 * A cached image and its number of users.
+	 */
+	private static class Entry {
+		/** The object key, or null for a long key */
+		final Object key;
+		final long longKey;
+		final Image image;
+		final long nBytes;
+		int nUsers;
+		boolean isPinned;
+		boolean isEvicted;
+		Entry previous;
+		Entry next;
+
+		Entry(Object key, long longKey, Image image, long nBytes) {
+			this.key = key;
+			this.longKey = longKey;
+			this.image = image;
+			this.nBytes = nBytes;
+			this.nUsers = 0;
+			this.isPinned = false;
+			this.isEvicted = false;
+		}
+	}
+}
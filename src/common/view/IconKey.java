@@ -0,0 +1,48 @@
+package common.view;
+
+/**
+ * The key of a cached icon variant: an icon name and a size.
+ *
+ * @author nicz
+ *
+ */
+final class IconKey {
+
+	private final String name;
+	private final int size;
+	private final int hash;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name the icon name, without extension
+	 * @param size the icon size in points
+	 */
+	IconKey(String name, int size) {
+		this.name = name;
+		this.size = size;
+		this.hash = 31*name.hashCode() + size;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IconKey)) {
+			return false;
+		}
+		IconKey key = (IconKey) obj;
+		return size == key.size && name.equals(key.name);
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + size + ")";
+	}
+}
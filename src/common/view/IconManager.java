@@ -1,20 +1,71 @@
 package common.view;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.LongSupplier;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Decorations;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Item;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Widget;
 
+import common.base.FlightEvent;
 import common.base.Logger;
+import common.base.LongObjectMap;
+import common.base.MetricsRegistry;
+import common.io.IconBundle;
 
 /**
  * Class to handle icons for buttons, tabs, etc.
- * Icons are stored in a register and will be disposed when application ends.
+ * Icons are stored in a cache bounded in number and in native memory,
+ * which disposes the least recently used icons, and the remaining icons
+ * are disposed when application ends.
+ * 
+ * <p>Icons set on widgets should be got with the methods taking the widget,
+ * so that they are disposed once no widget uses them. A widget uses one icon
+ * at a time: the icon it used before is released when it gets another one.
+ * Icons got by name, or created for a color, without widget are kept until
+ * {@link #disposeIcons()}, like before the cache was bounded.
+ * Icons got by size without widget must not be kept, since they may be
+ * disposed when evicted from the cache.</p>
+ * 
+ * <p>Icons may be preloaded at startup with {@link #preloadIcons(Collection)}:
+ * icon files are read and decoded by background threads, and the icons
+ * are created by the UI thread. A widget asking for an icon still being
+ * decoded shows a blank placeholder until the icon is ready, and is then
+ * laid out again by its parent.</p>
+ * 
+ * <p>Icons are read from the {@link IconBundle} set with
+ * {@link #setIconBundle(IconBundle)}, or found in the classpath as
+ * '/icons.bundle', and otherwise from the icon directory.</p>
+ * 
+ * <p>Icons may be got at a given size in points, with
+ * {@link #getIcon(String, int)}: each size is cached separately, and drawn
+ * at the display zoom from the high resolution variant of the icon if any.</p>
  * 
  * @author nicz
  *
@@ -28,10 +79,65 @@ public class IconManager {
 	 */
 	private static final String iconPath = "/home/nicz/prog/java/workspace/icons/";
 
+	/** The default maximum number of cached icons */
+	public static final int DEFAULT_MAX_ICONS = 512;
+
+	/** The default maximum native memory of cached icons, in bytes */
+	public static final long DEFAULT_MAX_BYTES = 16L*1024*1024;
+
 	private static Display display;
 	
-	private static Map<String, Image> mapNamedIcons;
-	private static Map<Color,  Image> mapColorIcons;
+	private static IconCache cache;
+
+	/** The classpath resource of the icon bundle used if present */
+	private static final String BUNDLE_RESOURCE = "/icons.bundle";
+
+	/** The bundle from which icons are read, or null to read the icon directory */
+	private static volatile IconBundle bundle;
+
+	/** The number of threads decoding preloaded icons */
+	private static final int PRELOAD_THREADS =
+		Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/** The threads decoding preloaded icons, created on first preload */
+	private static ExecutorService preloader;
+
+	/** The icons being decoded, until created by the UI thread */
+	private static final Map<String, Future<ImageData>> mapLoading =
+		new ConcurrentHashMap<String, Future<ImageData>>();
+
+	/** The widgets showing the placeholder until their icon is decoded */
+	private static final Map<String, List<Widget>> mapWaitingUsers =
+		new HashMap<String, List<Widget>>();
+
+	/** The blank image shown while an icon is preloaded */
+	private static Image placeholder;
+
+	/** The maximum number of colors kept to draw color icons */
+	private static final int MAX_SHARED_COLORS = 256;
+
+	/** The colors to draw color icons, by packed RGB value */
+	private static final LongObjectMap<Color> mapSharedColors = new LongObjectMap<Color>();
+
+	/** The color of default icons, packed as 0xRRGGBB */
+	private static final int DEFAULT_ICON_RGB = 0x000000;
+
+	/** The key of the widget data holding the icon used by a widget */
+	private static final String ICON_DATA_KEY = IconManager.class.getName() + ".icon";
+
+	/** The key of the widget data holding the name of the preloaded icon a widget waits for */
+	private static final String WAITING_DATA_KEY = IconManager.class.getName() + ".waiting";
+
+	/** Releases the icon used by a disposed widget */
+	private static final DisposeListener iconReleaser = new DisposeListener() {
+		@Override
+		public void widgetDisposed(DisposeEvent event) {
+			Image icon = (Image) event.widget.getData(ICON_DATA_KEY);
+			if (icon != null) {
+				cache.release(icon);
+			}
+		}
+	};
 
 	/**
 	 * Initialize the {@link Display} on which to create images.
@@ -40,44 +146,410 @@ public class IconManager {
 	 */
 	public static void init(Display display) {
 		IconManager.display = display;
-		mapNamedIcons = new HashMap<String, Image>();
-		mapColorIcons = new HashMap<Color,  Image>();
+		cache = new IconCache(DEFAULT_MAX_ICONS, DEFAULT_MAX_BYTES);
+		cache.setZoom(display.getPrimaryMonitor().getZoom());
+		registerGauges();
+		if (bundle == null) {
+			try {
+				bundle = IconBundle.openResource(BUNDLE_RESOURCE);
+			} catch (IOException exc) {
+				log.error("Could not read icon bundle " + BUNDLE_RESOURCE, exc);
+			}
+			if (bundle != null) {
+				log.info("Using icon bundle " + BUNDLE_RESOURCE + " with " + bundle.getNames().size() + " icons");
+			}
+		}
+	}
+	
+	/**
+	 * Sets the bundle from which icons are read, instead of the icon directory.
+	 * Icons missing from the bundle are still read from the icon directory.
+	 * 
+	 * @param bundle the icon bundle, or null to read icons from the icon directory
+	 */
+	public static void setIconBundle(IconBundle bundle) {
+		IconManager.bundle = bundle;
+	}
+	
+	/**
+	 * Sets the limits of the icon cache, disposing icons if needed.
+	 * 
+	 * @param maxIcons the maximum number of cached icons
+	 * @param maxBytes the maximum native memory of cached icons, in bytes
+	 */
+	public static void setCacheLimits(int maxIcons, long maxBytes) {
+		cache.setLimits(maxIcons, maxBytes);
+	}
+	
+	/**
+	 * Starts decoding the given icons in background threads.
+	 * Each decoded icon is then created and cached by the UI thread.
+	 * Icons already cached or being decoded are skipped.
+	 * Must be called by the UI thread, after {@link #init(Display)}.
+	 * 
+	 * @param iconNames the names of the icons to decode, without extension.
+	 */
+	public static void preloadIcons(Collection<String> iconNames) {
+		if (preloader == null) {
+			preloader = Executors.newFixedThreadPool(PRELOAD_THREADS, new ThreadFactory() {
+				private int nThreads = 0;
+				@Override
+				public synchronized Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "IconPreloader-" + (++nThreads));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		int nSubmitted = 0;
+		for (final String iconName : iconNames) {
+			if (cache.contains(iconName) || mapLoading.containsKey(iconName)) {
+				continue;
+			}
+			mapLoading.put(iconName, preloader.submit(new Callable<ImageData>() {
+				@Override
+				public ImageData call() {
+					ImageData data = decodeIcon(iconName);
+					installLater(iconName, data);
+					return data;
+				}
+			}));
+			++nSubmitted;
+		}
+		log.info("Preloading " + nSubmitted + " icons");
+	}
+	
+	/**
+	 * Starts decoding all the icons of the icon bundle, or of the icon directory
+	 * if there is no bundle, in background threads.
+	 * 
+	 * @see #preloadIcons(Collection)
+	 */
+	public static void preloadAllIcons() {
+		if (bundle != null) {
+			preloadIcons(bundle.getNames());
+			return;
+		}
+		List<String> listNames = new ArrayList<String>();
+		File[] files = new File(iconPath).listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String fileName = file.getName();
+				if (fileName.endsWith(".png")) {
+					listNames.add(fileName.substring(0, fileName.length() - 4));
+				}
+			}
+		}
+		preloadIcons(listNames);
 	}
 	
 	/**
 	 * Get the icon as an image.
+	 * The image is kept until {@link #disposeIcons()}; prefer
+	 * {@link #getIcon(String, Widget)}, which lets the image be disposed
+	 * once no widget uses it.
+	 * If the icon is being preloaded, waits until it is decoded.
 	 * 
 	 * @param iconName the name of the icon to create, without extension.
 	 * @return the created image.
 	 */
 	public static Image getIcon(String iconName) {
-		if (mapNamedIcons.containsKey(iconName)) {
-			return mapNamedIcons.get(iconName);
+		Image icon = findIcon(iconName);
+		cache.pin(icon);
+		return icon;
+	}
+	
+	/**
+	 * Gets a named icon from the cache, or creates it.
+	 * The image must not be kept unless acquired.
+	 * 
+	 * @return the cached image, or a default icon if the icon file can not be read.
+	 */
+	private static Image findIcon(String iconName) {
+		Image icon = cache.get(iconName);
+		if (icon != null) {
+			MetricsRegistry.getDefault().counter("icons.named.hits").increment();
+			return icon;
 		} else {
-			log.info("Creating new named icon for " + iconName);
-			String fileName = iconPath + iconName + ".png";
-			
-//			URL url = IconManager.class.getResource("/icons/" + iconName + ".png");
-//			String fileName = url.getFile();
-//			log.info("Icon is at " + fileName);
-
-			File fileIcon = new File(fileName);
-
-			Image icon = null;
-			if (fileIcon.exists()) {
-				icon = new Image(display, fileName);
-				mapNamedIcons.put(iconName, icon);
-			} else {
-				log.error("Could not find icon image " + fileName);
-				return createDefaultIcon(16);
+			MetricsRegistry.getDefault().counter("icons.named.misses").increment();
+			icon = loadIcon(iconName);
+			if (icon == null) {
+				return createColorIcon(16, DEFAULT_ICON_RGB);
 			}
 			return icon;
 		}
 	}
 	
+	/**
+	 * Get the icon as an image, used by the given widget.
+	 * The image is not disposed while the widget uses it, until the widget
+	 * gets another icon from this class or is disposed.
+	 * If the icon is being preloaded, returns a blank placeholder image,
+	 * which is replaced on the widget once the icon is decoded,
+	 * unless the widget got another icon from this class meanwhile.
+	 * 
+	 * @param iconName the name of the icon to create, without extension.
+	 * @param user the widget on which the image is set
+	 * @return the created image, or the placeholder image.
+	 */
+	public static Image getIcon(String iconName, Widget user) {
+		Future<ImageData> loading = mapLoading.get(iconName);
+		if (loading != null && !loading.isDone() && !cache.contains(iconName)) {
+			MetricsRegistry.getDefault().counter("icons.named.placeholders").increment();
+			removeWaitingUser(user);
+			List<Widget> listUsers = mapWaitingUsers.get(iconName);
+			if (listUsers == null) {
+				listUsers = new ArrayList<Widget>();
+				mapWaitingUsers.put(iconName, listUsers);
+			}
+			listUsers.add(user);
+			user.setData(WAITING_DATA_KEY, iconName);
+			return getPlaceholder();
+		}
+		Image icon = findIcon(iconName);
+		addUser(icon, user);
+		return icon;
+	}
+	
+	/**
+	 * Get the icon as an image of the given size, in points.
+	 * On HiDPI displays, the image is drawn at the display zoom from the
+	 * high resolution variant of the icon, named like 'icon@2x', if any,
+	 * and otherwise from the icon scaled to the display zoom.
+	 * The image must not be kept, see {@link #getIcon(String, int, Widget)}.
+	 * 
+	 * @param iconName the name of the icon to create, without extension.
+	 * @param size the icon size in points
+	 * @return the created image.
+	 */
+	public static Image getIcon(String iconName, int size) {
+		IconKey key = new IconKey(iconName, size);
+		Image icon = cache.get(key);
+		if (icon != null) {
+			MetricsRegistry.getDefault().counter("icons.sized.hits").increment();
+			return icon;
+		}
+		MetricsRegistry.getDefault().counter("icons.sized.misses").increment();
+		ImageData data = decodeIcon(iconName);
+		if (data == null) {
+			return createColorIcon(size, DEFAULT_ICON_RGB);
+		}
+		log.debug("Creating new icon {} of size {}", iconName, size);
+		ScaledIconProvider provider = new ScaledIconProvider(iconName, size, data);
+		icon = new Image(display, provider);
+		provider.release();
+		cache.put(key, icon);
+		return icon;
+	}
+	
+	/**
+	 * Get the icon as an image of the given size, used by the given widget.
+	 * The image is not disposed while the widget uses it.
+	 * 
+	 * @param iconName the name of the icon to create, without extension.
+	 * @param size the icon size in points
+	 * @param user the widget on which the image is set
+	 * @return the created image.
+	 * @see #getIcon(String, int)
+	 */
+	public static Image getIcon(String iconName, int size, Widget user) {
+		Image icon = getIcon(iconName, size);
+		addUser(icon, user);
+		return icon;
+	}
+	
+	/**
+	 * Creates and caches a named icon, from the preloaded image data if any.
+	 * 
+	 * @return the created icon, or null if the icon file can not be read.
+	 */
+	private static Image loadIcon(String iconName) {
+		ImageData data;
+		Future<ImageData> loading = mapLoading.remove(iconName);
+		if (loading != null) {
+			data = waitFor(loading);
+		} else {
+			data = decodeIcon(iconName);
+		}
+		return createIcon(iconName, data);
+	}
+	
+	/**
+	 * Creates and caches a named icon from its decoded data.
+	 * 
+	 * @return the icon, or null if the data is null.
+	 */
+	private static Image createIcon(String iconName, ImageData data) {
+		if (data == null) {
+			return null;
+		}
+		log.info("Creating new named icon for " + iconName);
+		Image icon = new Image(display, data);
+		cache.put(iconName, icon);
+		return icon;
+	}
+	
+	/**
+	 * Reads and decodes an icon file if it exists. May be called by any thread.
+	 * 
+	 * @return the image data, or null if there is no such icon or it can not be read.
+	 */
+	static ImageData findIconData(String iconName) {
+		IconBundle iconBundle = bundle;
+		if ((iconBundle != null && iconBundle.contains(iconName))
+				|| new File(iconPath + iconName + ".png").exists()) {
+			return decodeIcon(iconName);
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads and decodes an icon file. May be called by any thread.
+	 * 
+	 * @return the image data, or null if the icon file can not be read.
+	 */
+	private static ImageData decodeIcon(String iconName) {
+		IconBundle iconBundle = bundle;
+		if (iconBundle != null && iconBundle.contains(iconName)) {
+			FlightEvent event = FlightEvent.begin(FlightEvent.Type.ICON_LOAD, iconName);
+			try {
+				return new ImageData(iconBundle.getStream(iconName));
+			} catch (SWTException exc) {
+				log.error("Could not read icon image " + iconName + " from bundle", exc);
+				return null;
+			} finally {
+				event.end(iconBundle.getLength(iconName));
+			}
+		}
+		String fileName = iconPath + iconName + ".png";
+		
+//		URL url = IconManager.class.getResource("/icons/" + iconName + ".png");
+//		String fileName = url.getFile();
+//		log.info("Icon is at " + fileName);
+
+		File fileIcon = new File(fileName);
+		if (!fileIcon.exists()) {
+			log.error("Could not find icon image " + fileName);
+			return null;
+		}
+		FlightEvent event = FlightEvent.begin(FlightEvent.Type.ICON_LOAD, iconName);
+		try {
+			return new ImageData(fileName);
+		} catch (SWTException exc) {
+			log.error("Could not read icon image " + fileName, exc);
+			return null;
+		} finally {
+			event.end(event.isRecording() ? fileIcon.length() : 0);
+		}
+	}
+	
+	private static ImageData waitFor(Future<ImageData> loading) {
+		try {
+			return loading.get();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException exc) {
+			log.error("Failed to preload icon", exc);
+			return null;
+		}
+	}
+	
+	/**
+	 * Asks the UI thread to create a decoded icon and to set it
+	 * on the widgets waiting for it. The decoded data is passed along,
+	 * since the preloading task is not done yet when this is called.
+	 */
+	private static void installLater(final String iconName, final ImageData data) {
+		try {
+			if (!display.isDisposed()) {
+				display.asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						installIcon(iconName, data);
+					}
+				});
+			}
+		} catch (SWTException exc) {
+			// Display disposed meanwhile, the icon is not needed any more
+		}
+	}
+	
+	/**
+	 * Creates a decoded icon if not yet done, and sets it on the
+	 * widgets waiting for it. Called by the UI thread.
+	 * 
+	 * @param data	the decoded data, or null if the icon could not be read
+	 */
+	private static void installIcon(String iconName, ImageData data) {
+		if (preloader == null) {
+			return;
+		}
+		Image icon = null;
+		if (mapLoading.remove(iconName) != null) {
+			// Not yet created by a call to getIcon() meanwhile
+			icon = createIcon(iconName, data);
+		}
+		List<Widget> listUsers = mapWaitingUsers.remove(iconName);
+		if (listUsers != null) {
+			if (icon == null) {
+				icon = findIcon(iconName);
+			}
+			for (Widget user : listUsers) {
+				// Skip the widgets which got another icon meanwhile
+				if (!user.isDisposed() && iconName.equals(user.getData(WAITING_DATA_KEY))) {
+					setImage(user, icon);
+					addUser(icon, user);
+					requestLayout(user);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Sets the image of a widget holding an image.
+	 */
+	private static void setImage(Widget widget, Image image) {
+		if (widget instanceof Item) {
+			((Item) widget).setImage(image);
+		} else if (widget instanceof Label) {
+			((Label) widget).setImage(image);
+		} else if (widget instanceof Button) {
+			((Button) widget).setImage(image);
+		} else if (widget instanceof Decorations) {
+			((Decorations) widget).setImage(image);
+		} else {
+			log.warn("Can not set icon on " + widget);
+		}
+	}
+	
+	/**
+	 * Lays out again the parent of a widget whose image replaced
+	 * the placeholder, since the icon may not have the size of the placeholder.
+	 */
+	private static void requestLayout(Widget widget) {
+		if (widget instanceof Control) {
+			Composite parent = ((Control) widget).getParent();
+			if (parent != null && !parent.isDisposed()) {
+				parent.layout(new Control[] { (Control) widget });
+			}
+		}
+	}
+	
+	/**
+	 * @return the blank image shown while an icon is preloaded.
+	 */
+	private static Image getPlaceholder() {
+		if (placeholder == null) {
+			placeholder = new Image(display, 16, 16);
+		}
+		return placeholder;
+	}
+	
 	/**
 	 * Creates a blank icon image of the given size.
 	 * Useful in case an icon file is not found.
+	 * The image is kept until {@link #disposeIcons()}.
 	 * 
 	 * @param size the image size in pixels
 	 * @return the created blank icon
@@ -86,22 +558,55 @@ public class IconManager {
 		return createColorIcon(size, display.getSystemColor(SWT.COLOR_BLACK));
 	}
 	
+	/**
+	 * Creates an icon filled with a color, with a darker border.
+	 * Icons are cached by color value and size, so the color
+	 * may be disposed by the caller.
+	 * The image is kept until {@link #disposeIcons()}, see
+	 * {@link #createColorIcon(int, Color, Widget)}.
+	 * 
+	 * @param size the image size in pixels
+	 * @param color the icon color
+	 * @return the created icon
+	 */
 	public static Image createColorIcon(int size, Color color) {
-		if (mapColorIcons.containsKey(color)) {
-			log.debug("Reusing mapped color icon for " + color.toString());
-			return mapColorIcons.get(color);
+		Image icon = createColorIcon(size, toRGB(color));
+		cache.pin(icon);
+		return icon;
+	}
+	
+	/**
+	 * Creates an icon filled with a color, with a darker border.
+	 * Icons are cached by color value and size, looked up without allocation.
+	 * The image must not be kept, see {@link #createColorIcon(int, int, Widget)}.
+	 * 
+	 * @param size the image size in pixels
+	 * @param rgb the icon color, packed as 0xRRGGBB
+	 * @return the created icon
+	 */
+	public static Image createColorIcon(int size, int rgb) {
+		long key = ((long) size << 24) | (rgb & 0xffffff);
+		Image icon = cache.get(key);
+		if (icon != null) {
+			MetricsRegistry.getDefault().counter("icons.color.hits").increment();
+			return icon;
 		} else {
-			log.debug("Creating new color icon for " + color.toString());
-			Image icon = new Image(display, size, size);
-			Color darker = darkenColor(color, 0.7);
+			if (log.isDebugEnabled()) {
+				log.debug("Creating new color icon for {} of size {}", Integer.toHexString(rgb), Integer.valueOf(size));
+			}
+			MetricsRegistry.getDefault().counter("icons.color.misses").increment();
+			if (mapSharedColors.size() > MAX_SHARED_COLORS - 2) {
+				// Room for the two colors of this icon
+				disposeSharedColors();
+			}
+			icon = new Image(display, size, size);
 			GC gc = new GC(icon);
-			gc.setBackground(color); 
-			gc.setForeground(darker); 
+			gc.setBackground(getSharedColor(rgb & 0xffffff)); 
+			gc.setForeground(getSharedColor(darken(rgb, 0.7))); 
 			gc.fillRectangle(0, 0, size-1, size-1);
 			gc.drawRectangle(0, 0, size-1, size-1);
 			gc.dispose();
-			darker.dispose();
-			mapColorIcons.put(color, icon);
+			cache.put(key, icon);
 			return icon;
 		}
 	}
@@ -115,28 +620,161 @@ public class IconManager {
 		return darker;
 	}
 	
+	/**
+	 * @return the color packed as 0xRRGGBB
+	 */
+	private static int toRGB(Color color) {
+		return (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue();
+	}
+	
+	/**
+	 * @return the packed color darkened by the given factor, like {@link #darkenColor(Color, double)}
+	 */
+	private static int darken(int rgb, double factor) {
+		int red   = (int) (factor*(double) ((rgb >> 16) & 0xff));
+		int green = (int) (factor*(double) ((rgb >> 8) & 0xff));
+		int blue  = (int) (factor*(double) (rgb & 0xff));
+		return (red << 16) | (green << 8) | blue;
+	}
+	
+	/**
+	 * Gets a color for drawing icons, shared by all icons with this color.
+	 * Shared colors are only used while drawing, so they are all
+	 * disposed before drawing an icon when there are too many of them.
+	 * 
+	 * @param rgb the color, packed as 0xRRGGBB
+	 * @return the shared color
+	 */
+	private static Color getSharedColor(int rgb) {
+		Color color = mapSharedColors.get(rgb);
+		if (color == null) {
+			color = new Color(display, (rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+			mapSharedColors.put(rgb, color);
+		}
+		return color;
+	}
+	
+	private static void disposeSharedColors() {
+		for (Color color : mapSharedColors.values()) {
+			color.dispose();
+		}
+		mapSharedColors.clear();
+	}
+	
+	/**
+	 * Creates a color icon, used by the given widget.
+	 * The image is not disposed while the widget uses it.
+	 * 
+	 * @param size the image size in pixels
+	 * @param color the icon color
+	 * @param user the widget on which the image is set
+	 * @return the created icon
+	 */
+	public static Image createColorIcon(int size, Color color, Widget user) {
+		Image icon = createColorIcon(size, toRGB(color));
+		addUser(icon, user);
+		return icon;
+	}
+	
+	/**
+	 * Creates a color icon, used by the given widget.
+	 * The image is not disposed while the widget uses it.
+	 * 
+	 * @param size the image size in pixels
+	 * @param rgb the icon color, packed as 0xRRGGBB
+	 * @param user the widget on which the image is set
+	 * @return the created icon
+	 */
+	public static Image createColorIcon(int size, int rgb, Widget user) {
+		Image icon = createColorIcon(size, rgb);
+		addUser(icon, user);
+		return icon;
+	}
+	
 	/**
 	 * Dispose all created icon images.
 	 */
 	public static void disposeIcons() {
-		log.info("Disposing " + mapNamedIcons.size() + " named icons");
-		for (Image img : mapNamedIcons.values()) 
-			if (!img.isDisposed())
-				img.dispose();
-		mapNamedIcons.clear();
-		
-		log.info("Disposing " + mapColorIcons.size() + " color icons");
-		for (Color color : mapColorIcons.keySet()) {
-			mapColorIcons.get(color).dispose();
-			if (!color.isDisposed())
-				color.dispose();
-		}
-		for (Image img : mapColorIcons.values()) 
-			if (!img.isDisposed())
-				img.dispose();
-		
-		mapColorIcons.clear();
+		if (preloader != null) {
+			preloader.shutdownNow();
+			preloader = null;
+		}
+		mapLoading.clear();
+		mapWaitingUsers.clear();
+		if (placeholder != null) {
+			placeholder.dispose();
+			placeholder = null;
+		}
+		disposeSharedColors();
+		log.info("Disposing " + cache.getSize() + " cached icons and "
+				+ cache.getRetainedSize() + " evicted icons in use");
+		logStatistics();
+		cache.disposeAll();
 	}
 
-	
+	/**
+	 * Logs the number of cached icons, their memory and the hits, misses and evictions.
+	 */
+	public static void logStatistics() {
+		log.info("Icon cache: " + cache.getSize() + " icons, " + (cache.getBytes() / 1024) + " KB, "
+				+ cache.getHits() + " hits, " + cache.getMisses() + " misses, "
+				+ cache.getEvictions() + " evictions");
+	}
+
+	/**
+	 * Keeps the image from being disposed while the widget uses it,
+	 * and releases the image the widget used before, if any.
+	 * The widget stops waiting for a preloaded icon, if it was.
+	 * The used image is kept in the widget data, and released when the widget is disposed.
+	 */
+	private static void addUser(Image icon, Widget user) {
+		removeWaitingUser(user);
+		Image previous = (Image) user.getData(ICON_DATA_KEY);
+		if (previous == icon) {
+			return;
+		}
+		cache.acquire(icon);
+		user.setData(ICON_DATA_KEY, icon);
+		if (previous == null) {
+			user.addDisposeListener(iconReleaser);
+		} else {
+			cache.release(previous);
+		}
+	}
+
+	/**
+	 * Stops waiting for a preloaded icon to set on a widget. No effect if the widget is not waiting.
+	 */
+	private static void removeWaitingUser(Widget user) {
+		String waitingName = (String) user.getData(WAITING_DATA_KEY);
+		if (waitingName != null) {
+			user.setData(WAITING_DATA_KEY, null);
+			List<Widget> listUsers = mapWaitingUsers.get(waitingName);
+			if (listUsers != null) {
+				listUsers.remove(user);
+			}
+		}
+	}
+
+	private static void registerGauges() {
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		registry.gauge("icons.cache.size", new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				return cache.getSize();
+			}
+		});
+		registry.gauge("icons.cache.bytes", new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				return cache.getBytes();
+			}
+		});
+		registry.gauge("icons.cache.evictions", new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				return cache.getEvictions();
+			}
+		});
+	}
 }
@@ -166,7 +166,7 @@ public class MessageBox {
 		
 	    Label lblImg = new Label(shell, SWT.NONE);
 	    if (icon != null) {
-			lblImg.setImage(IconManager.getIcon(icon));
+			lblImg.setImage(IconManager.getIcon(icon, lblImg));
 		} else {
 			lblImg.setImage(display.getSystemImage(SWT.ICON_QUESTION));
 		}
@@ -344,7 +344,7 @@ public class MessageBox {
 
 	    Label lblImg = new Label(shell, SWT.NONE);
 	    if (passwdMode) 
-	    	lblImg.setImage(IconManager.getIcon("locked32"));
+	    	lblImg.setImage(IconManager.getIcon("locked32", lblImg));
 	    else lblImg.setImage(display.getSystemImage(SWT.ICON_QUESTION));
 	    
 	    final Button btnOk = widgetsFactory.createOkButton(shell, new SelectionAdapter() {
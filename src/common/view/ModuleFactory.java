@@ -2,6 +2,7 @@ package common.view;
 
 import org.eclipse.swt.widgets.Control;
 
+import common.base.FlightEvent;
 import common.base.Logger;
 import common.exceptions.AppException;
 
@@ -44,11 +45,14 @@ public class ModuleFactory {
 		String moduleClass = module.getModuleClass();
 		log.info("Loading module " + module.getTitle());
 		
+		FlightEvent event = FlightEvent.begin(FlightEvent.Type.MODULE_LOAD, module.getTitle());
 		try {
 			return (Control) Class.forName(moduleClass).newInstance();
 		} catch (Exception e) {
 			log.error("Failed to load module: " + e.getMessage());
 			throw new AppException("Failed to load module: " + e.getMessage());
+		} finally {
+			event.end();
 		}
 	}
 	
@@ -7,6 +7,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.ProgressBar;
 
+import common.base.FlightEvent;
 import common.listeners.ProgressListener;
 
 
@@ -20,6 +21,10 @@ public class ProgressBox extends Composite implements ProgressListener {
 	protected Label lblInfo;
 	protected ProgressBar progressBar;
 	protected int at;
+	
+	/** The flight recorder event of the current task */
+	private FlightEvent taskEvent;
+	private int nTaskSteps;
 
 	/**
 	 * Creates a progress box.
@@ -112,6 +117,8 @@ public class ProgressBox extends Composite implements ProgressListener {
 	
 	@Override
 	public void taskStarted(int total) {
+		taskEvent = FlightEvent.begin(FlightEvent.Type.TASK, getClass().getSimpleName());
+		nTaskSteps = total;
 		setMax(total);
 		setInfo("Initialisation ...");
 		open();
@@ -130,6 +137,10 @@ public class ProgressBox extends Composite implements ProgressListener {
 	@Override
 	public void taskFinished() {
 		close();
+		if (taskEvent != null) {
+			taskEvent.end(nTaskSteps);
+			taskEvent = null;
+		}
 	}
 	
 }
@@ -0,0 +1,79 @@
+package common.view;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageDataProvider;
+
+/**
+ * Provides the image data of an icon at a given size, for each display zoom.
+ *
+ * <p>The data for a zoom is computed each time SWT asks for it, which is
+ * when the image is created and when it is first drawn at another zoom.
+ * The decoded icon is kept only until the image is created,
+ * see {@link #release()}, and is decoded again if needed afterwards.
+ * Above 100% zoom, the high resolution variant of the icon, named like
+ * 'icon@2x', is used if it exists and the icon is smaller than needed.
+ * Icons are scaled with {@link ImageData#scaledTo(int, int)}, keeping their aspect ratio.
+ *
+ * @author nicz
+ *
+ */
+class ScaledIconProvider implements ImageDataProvider {
+
+	/** The suffix of the high resolution variants of icons */
+	private static final String HIGH_RESOLUTION_SUFFIX = "@2x";
+
+	private final String iconName;
+	private final int size;
+
+	/** The decoded icon, or null once released */
+	private ImageData baseData;
+
+	/** True if the icon has no high resolution variant */
+	private boolean isHighResMissing;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param iconName the icon name, without extension
+	 * @param size the icon size in points, at 100% zoom
+	 * @param baseData the decoded icon
+	 */
+	ScaledIconProvider(String iconName, int size, ImageData baseData) {
+		this.iconName = iconName;
+		this.size = size;
+		this.baseData = baseData;
+		this.isHighResMissing = false;
+	}
+
+	/**
+	 * Releases the decoded icon, once the image is created.
+	 */
+	void release() {
+		baseData = null;
+	}
+
+	@Override
+	public ImageData getImageData(int zoom) {
+		int width = Math.max(1, size * zoom / 100);
+		ImageData source = baseData;
+		if (source == null) {
+			source = IconManager.findIconData(iconName);
+			if (source == null) {
+				return null;
+			}
+		}
+		if (width > source.width && !isHighResMissing) {
+			ImageData highResData = IconManager.findIconData(iconName + HIGH_RESOLUTION_SUFFIX);
+			if (highResData != null) {
+				source = highResData;
+			} else {
+				isHighResMissing = true;
+			}
+		}
+		if (source.width == width) {
+			return source;
+		}
+		int height = Math.max(1, source.height * width / source.width);
+		return source.scaledTo(width, height);
+	}
+}
@@ -62,7 +62,7 @@ public class Testing extends AbstractMain {
 		//moduleFactory = ModuleFactory.getInstance();
 		//ViewTools.init(display);
 		
-		shell.setImage(IconManager.getIcon("run"));
+		shell.setImage(IconManager.getIcon("run", shell));
 	}
 
 	@Override
@@ -260,7 +260,7 @@ public class WidgetsFactory {
 		if (label != null)
 			button.setText(label);
 		if (icon != null)
-			button.setImage(IconManager.getIcon(icon));
+			button.setImage(IconManager.getIcon(icon, button));
 		button.setToolTipText(tooltipText);
 		
 		GridData gridData = new GridData();
@@ -287,7 +287,7 @@ public class WidgetsFactory {
 			String tooltipText, SelectionListener listener) {
 		Button toggle = new Button(parent, SWT.TOGGLE);
 		toggle.setToolTipText(tooltipText);
-		toggle.setImage(IconManager.getIcon(icon));
+		toggle.setImage(IconManager.getIcon(icon, toggle));
 		if (listener != null)
 			toggle.addSelectionListener(listener);
 		return toggle;
@@ -418,7 +418,7 @@ public class WidgetsFactory {
 	public ToolItem createToolItem(ToolBar toolBar, String icon,
 			String label, String tooltip, SelectionListener listener) {
 		ToolItem item = new ToolItem(toolBar, SWT.PUSH);
-		item.setImage(IconManager.getIcon(icon));
+		item.setImage(IconManager.getIcon(icon, item));
 		if (label != null)
 			item.setText(label);
 		item.setToolTipText(tooltip);
@@ -538,7 +538,7 @@ public class WidgetsFactory {
 	 */
 	public Label createIconLabel(Composite parent, String icon, String tooltip) {
 		Label label = new Label(parent, 0);
-		label.setImage(IconManager.getIcon(icon));
+		label.setImage(IconManager.getIcon(icon, label));
 		if (tooltip != null) {
 			label.setToolTipText(tooltip);
 		}